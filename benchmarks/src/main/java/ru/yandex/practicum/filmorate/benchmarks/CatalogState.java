@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Приложение без веб-сервера поверх H2 в памяти, заполненное тестовыми данными заданного масштаба.
+ * Данные генерируются с фиксированным seed, поэтому прогоны разных версий сравнимы между собой.
+ * Лайки распределены неравномерно: фильмы с меньшим номером получают их чаще, как популярные фильмы.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+    private static final int SEED = 42;
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MPA_COUNT = 5;
+    private static final int GENRE_COUNT = 6;
+    // Пользователи без лайков и друзей, по одному на поток записывающих бенчмарков
+    private static final int SPARE_USERS = 256;
+
+    @Param("1000")
+    public int films;
+
+    @Param("1000")
+    public int users;
+
+    @Param("20")
+    public int likesPerUser;
+
+    @Param("20")
+    public int friendsPerUser;
+
+    public FilmDbStorage filmStorage;
+    public UserDbStorage userStorage;
+    public FilmService filmService;
+    public UserService userService;
+
+    private ConfigurableApplicationContext context;
+    private int[] filmIds;
+    private int[] userIds;
+    private int[] spareUserIds;
+    private final AtomicInteger nextSpareUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        filmStorage = context.getBean(FilmDbStorage.class);
+        userStorage = context.getBean(UserDbStorage.class);
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+
+        Random random = new Random(SEED);
+        userIds = createUsers(users, "user");
+        spareUserIds = createUsers(SPARE_USERS, "spare");
+        filmIds = createFilms(random);
+        createLikes(random);
+        createFriends(random);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public int randomFilm() {
+        return filmIds[ThreadLocalRandom.current().nextInt(filmIds.length)];
+    }
+
+    public int randomUser() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+
+    /**
+     * Выдает пользователя без лайков, которого не использует ни один другой поток.
+     */
+    public int takeSpareUser() {
+        return spareUserIds[nextSpareUser.getAndIncrement() % spareUserIds.length];
+    }
+
+    private int[] createUsers(int count, String prefix) {
+        List<User> created = new ArrayList<>();
+        List<User> chunk = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String login = prefix + i;
+            chunk.add(new User(0, login + "@mail.ru", login, login, LocalDate.of(1990, 1, 1).plusDays(i % 10000)));
+            if (chunk.size() == CHUNK_SIZE || i == count - 1) {
+                created.addAll(userStorage.importUsers(chunk));
+                chunk = new ArrayList<>();
+            }
+        }
+        return created.stream().mapToInt(User::getId).toArray();
+    }
+
+    private int[] createFilms(Random random) {
+        List<Film> created = new ArrayList<>();
+        List<Film> chunk = new ArrayList<>();
+        for (int i = 0; i < films; i++) {
+            chunk.add(Film.builder()
+                    .name("Film " + i)
+                    .description("Description of film " + i)
+                    .releaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25000)))
+                    .duration(60 + random.nextInt(120))
+                    .mpa(new Mpa(1 + random.nextInt(MPA_COUNT), null))
+                    .genres(List.of(new Genre(1 + random.nextInt(GENRE_COUNT), null),
+                            new Genre(1 + random.nextInt(GENRE_COUNT), null)))
+                    .build());
+            if (chunk.size() == CHUNK_SIZE || i == films - 1) {
+                created.addAll(filmStorage.importFilms(chunk));
+                chunk = new ArrayList<>();
+            }
+        }
+        return created.stream().mapToInt(Film::getId).toArray();
+    }
+
+    private void createLikes(Random random) {
+        List<Like> chunk = new ArrayList<>();
+        for (int userId : userIds) {
+            for (int i = 0; i < Math.min(likesPerUser, films); i++) {
+                // Квадрат равномерной величины смещает выбор к началу списка фильмов
+                double skew = random.nextDouble();
+                chunk.add(new Like(filmIds[(int) (skew * skew * filmIds.length)], userId));
+            }
+            if (chunk.size() >= CHUNK_SIZE) {
+                filmStorage.importLikes(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        filmStorage.importLikes(chunk);
+    }
+
+    private void createFriends(Random random) {
+        List<Friends> chunk = new ArrayList<>();
+        for (int userId : userIds) {
+            for (int i = 0; i < Math.min(friendsPerUser, users - 1); i++) {
+                int friendId = userIds[random.nextInt(userIds.length)];
+                if (friendId != userId) {
+                    chunk.add(new Friends(userId, friendId));
+                }
+            }
+            if (chunk.size() >= CHUNK_SIZE) {
+                userStorage.importFriends(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        userStorage.importFriends(chunk);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Популярные фильмы, полный список фильмов и лайки на уровне хранилища и сервиса.
+ * Сервис работает через кэш фильмов, хранилище - напрямую с базой и индексами.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBenchmarks {
+    private static final int POPULAR_COUNT = 10;
+    private static final String POPULAR_COUNT_PARAM = String.valueOf(POPULAR_COUNT);
+
+    /**
+     * Свой пользователь без лайков у каждого потока, чтобы лайки разных потоков не конфликтовали.
+     */
+    @State(Scope.Thread)
+    public static class Liker {
+        int userId;
+
+        @Setup
+        public void setUp(CatalogState catalog) {
+            userId = catalog.takeSpareUser();
+        }
+    }
+
+    @Benchmark
+    public Collection<Film> storageGetPopular(CatalogState catalog) {
+        return catalog.filmStorage.getPopular(POPULAR_COUNT);
+    }
+
+    @Benchmark
+    public Collection<Film> serviceGetPopular(CatalogState catalog) {
+        return catalog.filmService.getListOfPopularFilms(POPULAR_COUNT_PARAM, FilmFilter.builder().build());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Collection<Film> serviceGetPopularContended(CatalogState catalog) {
+        return catalog.filmService.getListOfPopularFilms(POPULAR_COUNT_PARAM, FilmFilter.builder().build());
+    }
+
+    @Benchmark
+    public Collection<Film> storageFindAllFilms(CatalogState catalog) {
+        return catalog.filmStorage.findAllFilms();
+    }
+
+    /**
+     * Лайк и его отмена, чтобы данные не менялись от итерации к итерации.
+     */
+    @Benchmark
+    public void storageLikeAndUnlike(CatalogState catalog, Liker liker) {
+        int filmId = catalog.randomFilm();
+        catalog.filmStorage.addLike(filmId, liker.userId);
+        catalog.filmStorage.removeLike(filmId, liker.userId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void storageLikeAndUnlikeContended(CatalogState catalog, Liker liker) {
+        int filmId = catalog.randomFilm();
+        catalog.filmStorage.addLike(filmId, liker.userId);
+        catalog.filmStorage.removeLike(filmId, liker.userId);
+    }
+
+    /**
+     * Чтение популярных фильмов тремя потоками, пока четвертый ставит и снимает лайки через сервис.
+     */
+    @Benchmark
+    @Group("popularUnderLikes")
+    @GroupThreads(3)
+    public Collection<Film> popularReader(CatalogState catalog) {
+        return catalog.filmService.getListOfPopularFilms(POPULAR_COUNT_PARAM, FilmFilter.builder().build());
+    }
+
+    @Benchmark
+    @Group("popularUnderLikes")
+    @GroupThreads(1)
+    public void likeWriter(CatalogState catalog, Liker liker) {
+        int filmId = catalog.randomFilm();
+        catalog.filmService.addLike(filmId, liker.userId);
+        catalog.filmService.removeLike(filmId, liker.userId);
+    }
+}
@@ -0,0 +1,330 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Нагрузочный тест по HTTP. Поднимает FilmorateApplication на случайном порту с H2 в памяти
+ * (или работает с уже запущенным приложением с пустой базой по адресу load.url), заполняет базу через /import
+ * и в течение заданного времени выполняет смесь запросов:
+ * <ul>
+ *     <li>чтение лент: популярные фильмы, фильмы по id, друзья, общие друзья, справочники;</li>
+ *     <li>шторм лайков: потоки ставят и снимают лайки нескольким самым популярным фильмам;</li>
+ *     <li>смена друзей: потоки добавляют и удаляют случайных друзей.</li>
+ * </ul>
+ * Для каждого эндпоинта выводятся пропускная способность и задержки p50/p99/p999, результат также
+ * сохраняется в target/load-result.json.
+ * <p>
+ * Если задан load.rate, запросы отправляются с постоянной частотой, а задержка отсчитывается
+ * от запланированного времени отправки, поэтому очередь перед медленным сервером не занижает перцентили.
+ * Без load.rate каждый поток отправляет следующий запрос сразу после ответа на предыдущий.
+ * <p>
+ * Параметры задаются системными свойствами: load.url, load.threads, load.rate, load.warmup-seconds,
+ * load.duration-seconds, load.films, load.users, load.likes-per-user, load.friends-per-user.
+ * Свойство load.execution-mode задает режим выполнения запросов поднятого приложения (platform или async),
+ * результат тогда сохраняется в target/load-result-&lt;режим&gt;.json, чтобы прогоны можно было сравнить.
+ */
+public class HttpLoadTest {
+    private static final int SEED = 42;
+    // В пустой базе фильмы и пользователи получают id подряд начиная с 1
+    private static final int FIRST_ID = 1;
+    private static final int HOT_FILMS = 5;
+    private static final int FEED_SIZE = 50;
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String baseUrl;
+    private final String resultName;
+    private final int threads;
+    private final int rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int films;
+    private final int users;
+    private final int likesPerUser;
+    private final int friendsPerUser;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    private HttpLoadTest(String baseUrl, String resultName) {
+        this.baseUrl = baseUrl;
+        this.resultName = resultName;
+        threads = Integer.getInteger("load.threads", 16);
+        rate = Integer.getInteger("load.rate", 0);
+        warmupSeconds = Integer.getInteger("load.warmup-seconds", 10);
+        durationSeconds = Integer.getInteger("load.duration-seconds", 30);
+        films = Integer.getInteger("load.films", 1000);
+        users = Integer.getInteger("load.users", 1000);
+        likesPerUser = Integer.getInteger("load.likes-per-user", 20);
+        friendsPerUser = Integer.getInteger("load.friends-per-user", 20);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url");
+        String executionMode = System.getProperty("load.execution-mode", "platform");
+        ConfigurableApplicationContext context = null;
+        if (url == null) {
+            context = new SpringApplicationBuilder(FilmorateApplication.class)
+                    .logStartupInfo(false)
+                    .run("--server.port=0",
+                            "--spring.datasource.url=jdbc:h2:mem:load",
+                            "--spring.main.banner-mode=off",
+                            "--logging.level.root=WARN",
+                            "--filmorate.execution.mode=" + executionMode);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            url = "http://localhost:" + port;
+        }
+        try {
+            String resultName = System.getProperty("load.execution-mode") == null
+                    ? "load-result.json" : "load-result-" + executionMode + ".json";
+            new HttpLoadTest(url, resultName).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        seed();
+        System.out.printf("Прогрев %d с, измерение %d с, потоков: %d, частота: %s%n", warmupSeconds, durationSeconds,
+                threads, rate > 0 ? rate + " запросов/с" : "без ограничения");
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> work(worker, start, end), "load-" + i);
+            thread.start();
+            workers.add(thread);
+        }
+        TimeUnit.NANOSECONDS.sleep(measureFrom - System.nanoTime());
+        // Все, что записано во время прогрева, отбрасывается
+        recorders.values().forEach(Recorder::reset);
+        errors.clear();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        report();
+    }
+
+    private void work(int worker, long start, long end) {
+        // Собственный пользователь без лайков и друзей: его лайки и друзья не конфликтуют с другими потоками
+        int ownUserId = FIRST_ID + users + worker;
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * threads / rate : 0;
+        long intended = start + (interval > 0 ? ThreadLocalRandom.current().nextLong(interval) : 0);
+        while (true) {
+            if (interval > 0) {
+                long delay = intended - System.nanoTime();
+                if (delay > 0) {
+                    sleepNanos(delay);
+                }
+            }
+            long requestStart = interval > 0 ? intended : System.nanoTime();
+            if (requestStart >= end) {
+                return;
+            }
+            step(ownUserId, requestStart);
+            intended += interval;
+        }
+    }
+
+    private void step(int ownUserId, long requestStart) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int choice = random.nextInt(100);
+        if (choice < 25) {
+            get("GET /films/popular", "/films/popular?count=10", requestStart);
+        } else if (choice < 40) {
+            String ids = IntStream.generate(() -> randomFilm(random)).limit(FEED_SIZE)
+                    .mapToObj(String::valueOf).collect(Collectors.joining(","));
+            get("GET /films?ids", "/films?ids=" + ids, requestStart);
+        } else if (choice < 50) {
+            get("GET /films/{id}", "/films/" + randomFilm(random), requestStart);
+        } else if (choice < 60) {
+            get("GET /users/{id}/friends", "/users/" + randomUser(random) + "/friends", requestStart);
+        } else if (choice < 65) {
+            get("GET /users/{id}/friends/common/{otherId}",
+                    "/users/" + randomUser(random) + "/friends/common/" + randomUser(random), requestStart);
+        } else if (choice < 70) {
+            boolean genres = random.nextBoolean();
+            get(genres ? "GET /genres" : "GET /mpa", genres ? "/genres" : "/mpa", requestStart);
+        } else if (choice < 85) {
+            int filmId = FIRST_ID + random.nextInt(HOT_FILMS);
+            send("PUT /films/{id}/like/{userId}", "PUT", "/films/" + filmId + "/like/" + ownUserId, requestStart);
+            send("DELETE /films/{id}/like/{userId}", "DELETE", "/films/" + filmId + "/like/" + ownUserId, System.nanoTime());
+        } else {
+            int friendId = randomUser(random);
+            send("PUT /users/{id}/friends/{friendId}", "PUT", "/users/" + ownUserId + "/friends/" + friendId, requestStart);
+            send("DELETE /users/{id}/friends/{friendId}", "DELETE", "/users/" + ownUserId + "/friends/" + friendId,
+                    System.nanoTime());
+        }
+    }
+
+    private int randomFilm(Random random) {
+        // Фильмы с меньшим id запрашиваются чаще, как и при заполнении лайков
+        double skew = random.nextDouble();
+        return FIRST_ID + (int) (skew * skew * films);
+    }
+
+    private int randomUser(Random random) {
+        return FIRST_ID + random.nextInt(users);
+    }
+
+    private void get(String endpoint, String path, long requestStart) {
+        send(endpoint, "GET", path, requestStart);
+    }
+
+    private void send(String endpoint, String method, String path, long requestStart) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        boolean failed;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            failed = response.statusCode() >= 400;
+        } catch (IOException e) {
+            failed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long latency = Math.min(System.nanoTime() - requestStart, MAX_LATENCY_NANOS);
+        recorders.computeIfAbsent(endpoint, key -> new Recorder(MAX_LATENCY_NANOS, 3)).recordValue(latency);
+        if (failed) {
+            errors.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Заполняет базу через эндпоинты массового импорта. Фильмы и пользователи получают id подряд,
+     * за пользователями идут по одному свободному пользователю на поток нагрузки.
+     */
+    private void seed() throws IOException, InterruptedException {
+        Random random = new Random(SEED);
+        long start = System.nanoTime();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < users + threads; i++) {
+            body.append(String.format("{\"email\":\"load%d@mail.ru\",\"login\":\"load%d\",\"birthday\":\"%s\"}%n",
+                    i, i, LocalDate.of(1990, 1, 1).plusDays(i % 10000)));
+        }
+        post("/import/users", body);
+        body.setLength(0);
+        for (int i = 0; i < films; i++) {
+            body.append(String.format("{\"name\":\"Load film %d\",\"description\":\"Description %d\","
+                            + "\"releaseDate\":\"%s\",\"duration\":%d,\"mpa\":{\"id\":%d},\"genres\":[{\"id\":%d}]}%n",
+                    i, i, LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25000)), 60 + random.nextInt(120),
+                    1 + random.nextInt(5), 1 + random.nextInt(6)));
+        }
+        post("/import/films", body);
+        body.setLength(0);
+        for (int user = 0; user < users; user++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                body.append(String.format("{\"filmId\":%d,\"userId\":%d}%n", randomFilm(random), FIRST_ID + user));
+            }
+        }
+        post("/import/likes", body);
+        body.setLength(0);
+        for (int user = 0; user < users; user++) {
+            for (int i = 0; i < friendsPerUser; i++) {
+                int friendId = randomUser(random);
+                if (friendId != FIRST_ID + user) {
+                    body.append(String.format("{\"userId\":%d,\"friendId\":%d}%n", FIRST_ID + user, friendId));
+                }
+            }
+        }
+        post("/import/friends", body);
+        System.out.printf("База заполнена за %d мс: фильмов %d, пользователей %d%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), films, users + threads);
+    }
+
+    private void post(String path, CharSequence ndjson) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString(), StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Импорт " + path + " завершился ошибкой " + response.statusCode()
+                    + ": " + response.body());
+        }
+    }
+
+    private void report() throws IOException {
+        Map<String, Histogram> histograms = new TreeMap<>();
+        recorders.forEach((endpoint, recorder) -> histograms.put(endpoint, recorder.getIntervalHistogram()));
+        Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+        histograms.values().forEach(total::add);
+        histograms.put("TOTAL", total);
+
+        PrintStream out = System.out;
+        out.printf("%-45s %10s %8s %10s %10s %10s %10s %10s%n",
+                "Эндпоинт", "Запросов", "Ошибок", "Запросов/с", "p50, мс", "p99, мс", "p999, мс", "max, мс");
+        StringBuilder json = new StringBuilder("[\n");
+        histograms.forEach((endpoint, histogram) -> {
+            long errorCount = endpoint.equals("TOTAL")
+                    ? errors.values().stream().mapToLong(AtomicLong::get).sum()
+                    : errors.getOrDefault(endpoint, new AtomicLong()).get();
+            double throughput = (double) histogram.getTotalCount() / durationSeconds;
+            out.printf(Locale.ROOT, "%-45s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n", endpoint,
+                    histogram.getTotalCount(), errorCount, throughput, millis(histogram, 50), millis(histogram, 99),
+                    millis(histogram, 99.9), histogram.getMaxValue() / 1e6);
+            json.append(String.format(Locale.ROOT, "  {\"endpoint\":\"%s\",\"requests\":%d,\"errors\":%d,"
+                            + "\"throughput\":%.1f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f},%n",
+                    endpoint, histogram.getTotalCount(), errorCount, throughput, millis(histogram, 50),
+                    millis(histogram, 99), millis(histogram, 99.9), histogram.getMaxValue() / 1e6));
+        });
+        json.setLength(json.length() - 2);
+        json.append("\n]\n");
+        Path result = Path.of("target", resultName);
+        Files.createDirectories(result.getParent());
+        Files.writeString(result, json);
+        out.println("Результат сохранен в " + result.toAbsolutePath());
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общие друзья двух случайных пользователей на уровне хранилища и сервиса.
+ * Сервис дополнительно проверяет существование обоих пользователей.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmarks {
+
+    @Benchmark
+    public Collection<User> storageFindCommonFriends(CatalogState catalog) {
+        return catalog.userStorage.findCommonFriends(catalog.randomUser(), catalog.randomUser());
+    }
+
+    @Benchmark
+    public Collection<User> serviceFindCommonFriends(CatalogState catalog) {
+        return catalog.userService.getListOfCommonFriends(catalog.randomUser(), catalog.randomUser());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Collection<User> serviceFindCommonFriendsContended(CatalogState catalog) {
+        return catalog.userService.getListOfCommonFriends(catalog.randomUser(), catalog.randomUser());
+    }
+}
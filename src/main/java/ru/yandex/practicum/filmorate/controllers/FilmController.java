@@ -1,63 +1,100 @@
 package ru.yandex.practicum.filmorate.controllers;
 
-import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-@Slf4j
 @RestController
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
     public Optional<Film> getFilmById(@PathVariable int id) {
-        log.info("Получен GET-запрос к эндпоинту: '/films/{id}'");
         return filmService.findFilmById(id);
     }
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Получен GET-запрос к эндпоинту: '/films'");
-        return filmService.findAllFilms();
+    public Collection<Film> getAllFilms(@RequestParam(required = false) Integer after,
+                                        @RequestParam(required = false) Integer size,
+                                        @RequestParam(required = false) Integer genreId,
+                                        @RequestParam(required = false) Integer mpaId,
+                                        @RequestParam(required = false) Integer yearFrom,
+                                        @RequestParam(required = false) Integer yearTo,
+                                        @RequestParam(required = false) Integer minLikes) {
+        return filmService.findFilms(after, size, filter(genreId, mpaId, yearFrom, yearTo, minLikes));
+    }
+
+    @GetMapping(params = "ids")
+    public BatchResponse<Film> getFilmsByIds(@RequestParam List<Integer> ids) {
+        return filmService.findFilmsByIds(ids);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        return JsonArrayStream.of(objectMapper, filmService::streamAllFilms);
+    }
+
+    @GetMapping("/search")
+    public Collection<Film> searchFilms(@RequestParam String query,
+                                        @RequestParam(defaultValue = "title,description") String by,
+                                        @RequestParam(defaultValue = "100") int count) {
+        return filmService.searchFilms(query, by, count);
     }
 
     @PostMapping
     public Film createFilm(@Valid @RequestBody Film film) {
-        log.info("Получен POST-запрос к эндпоинту: '/films'");
         return filmService.createFilm(film);
     }
 
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
-        log.info("Получен PUT-запрос к эндпоинту: '/films'");
         return filmService.updateFilm(film);
     }
 
     @PutMapping("/{id}/like/{userId}")
     public void addLike(@PathVariable int id, @PathVariable int userId) {
-        log.info("Получен PUT-запрос к эндпоинту: '/films/{id}/like/{userId}'");
         filmService.addLike(id, userId);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
     public void removeLike(@PathVariable int id, @PathVariable int userId) {
-        log.info("Получен DELETE-запрос к эндпоинту: '/films/{id}/like/{userId}'");
         filmService.removeLike(id, userId);
     }
 
     @GetMapping("/popular")
-    public Collection<Film> getListOfPopularFilms(@RequestParam(defaultValue = "10") String count) {
-        log.info("Получен GET-запрос к эндпоинту: '/films/popular?count={count}'");
-        return filmService.getListOfPopularFilms(count);
+    public Collection<Film> getListOfPopularFilms(@RequestParam(defaultValue = "10") String count,
+                                                  @RequestParam(required = false) Integer genreId,
+                                                  @RequestParam(required = false) Integer mpaId,
+                                                  @RequestParam(required = false) Integer yearFrom,
+                                                  @RequestParam(required = false) Integer yearTo,
+                                                  @RequestParam(required = false) Integer minLikes) {
+        return filmService.getListOfPopularFilms(count, filter(genreId, mpaId, yearFrom, yearTo, minLikes));
+    }
+
+    private static FilmFilter filter(Integer genreId, Integer mpaId, Integer yearFrom, Integer yearTo, Integer minLikes) {
+        return FilmFilter.builder()
+                .genreId(genreId)
+                .mpaId(mpaId)
+                .yearFrom(yearFrom)
+                .yearTo(yearTo)
+                .minLikes(minLikes)
+                .build();
     }
 }
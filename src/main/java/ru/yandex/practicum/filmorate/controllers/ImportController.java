@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.InputStream;
+
+/**
+ * Массовый импорт. Тело запроса - NDJSON: по одному объекту в формате обычных запросов на строку.
+ */
+@RestController
+@RequestMapping(value = "/import", consumes = ImportController.NDJSON)
+public class ImportController {
+    static final String NDJSON = "application/x-ndjson";
+
+    private final ImportService importService;
+
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    @PostMapping("/films")
+    public ImportReport importFilms(InputStream body) {
+        return importService.importFilms(body);
+    }
+
+    @PostMapping("/users")
+    public ImportReport importUsers(InputStream body) {
+        return importService.importUsers(body);
+    }
+
+    @PostMapping("/likes")
+    public ImportReport importLikes(InputStream body) {
+        return importService.importLikes(body);
+    }
+
+    @PostMapping("/friends")
+    public ImportReport importFriends(InputStream body) {
+        return importService.importFriends(body);
+    }
+}
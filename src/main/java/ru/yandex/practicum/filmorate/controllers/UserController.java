@@ -1,75 +1,95 @@
 package ru.yandex.practicum.filmorate.controllers;
 
-import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-@Slf4j
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
     public User createUser(@Valid @RequestBody User user) { // объект User передается в теле запроса (без id), если поля объекта не заполнены произойдёт ошибка
-        log.info("Получен POST-запрос к эндпоинту: '/users'");
         return userService.createUser(user);
     }
 
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) { // объект User передается в теле запроса
-        log.info("Получен PUT-запрос к эндпоинту: '/users'");
         return userService.updateUser(user);
     }
 
     @GetMapping("/{id}")
     public Optional<User> getUserById(@PathVariable int id) {
-        log.info("Получен GET-запрос к эндпоинту: '/users/{id}'");
         return userService.findUserById(id);
     }
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Получен GET-запрос к эндпоинту: '/users'");
-        return userService.findAllUsers();
+    public Collection<User> getAllUsers(@RequestParam(required = false) Integer after,
+                                        @RequestParam(required = false) Integer size) {
+        return userService.findUsers(after, size);
+    }
+
+    @GetMapping(params = "ids")
+    public BatchResponse<User> getUsersByIds(@RequestParam List<Integer> ids) {
+        return userService.findUsersByIds(ids);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return JsonArrayStream.of(objectMapper, userService::streamAllUsers);
     }
 
     @GetMapping("/{id}/friends")
     public Collection<User> getListOfUsersFriends(@PathVariable int id) {
-        log.info("Получен GET-запрос к эндпоинту: '/users/{id}/friends'");
         return userService.findUsersFriends(id);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getListOfCommonFriends(@PathVariable int id, @PathVariable int otherId) {
-        log.info("Получен GET-запрос к эндпоинту: '/users/{id}/friends/common/{otherId}'");
         return userService.getListOfCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/recommended")
+    public Collection<User> getRecommendedFriends(@PathVariable int id,
+                                                  @RequestParam(defaultValue = "10") int count) {
+        return userService.findRecommendedFriends(id, count);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public Collection<Film> getRecommendedFilms(@PathVariable int id,
+                                                @RequestParam(defaultValue = "10") int count) {
+        return userService.findRecommendedFilms(id, count);
+    }
+
     @DeleteMapping("/{id}")
     public void removeUser(@PathVariable int id) {
-        log.info("Получен DELETE-запрос к эндпоинту: '/users'/{id}'");
         userService.removeUser(id);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
     public void addFriend(@PathVariable int id, @PathVariable int friendId) {
-        log.info("Получен PUT-запрос к эндпоинту: '/user'/{id}/friends/{friendId}'");
         userService.addFriend(id, friendId);
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
     public void removeFriend(@PathVariable int id, @PathVariable int friendId) {
-        log.info("Получен DELETE-запрос к эндпоинту: '/user'/{id}/friends/{friendId}'");
         userService.removeFriend(id, friendId);
     }
 }
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.exceptions;
+
+public class NotSavedException extends RuntimeException {
+    public NotSavedException(String message) {
+        super(message);
+    }
+}
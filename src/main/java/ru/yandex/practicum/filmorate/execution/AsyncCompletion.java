@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.execution;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Действие по завершении HTTP-запроса. Для асинхронного запроса фильтр заканчивает работу раньше,
+ * чем обработчик, поэтому статус ответа и полное время известны только в AsyncListener.onComplete.
+ */
+public final class AsyncCompletion {
+    private AsyncCompletion() {
+    }
+
+    public static void whenComplete(HttpServletRequest request, Runnable action) {
+        if (!request.isAsyncStarted()) {
+            action.run();
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                action.run();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+}
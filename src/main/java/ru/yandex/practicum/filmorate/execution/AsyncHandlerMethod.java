@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.execution;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Метод контроллера, который возвращает Spring MVC задачу вместо результата: аргументы разбираются
+ * в потоке Tomcat, а сам метод выполняется в пуле асинхронной обработки запросов.
+ */
+class AsyncHandlerMethod extends ServletInvocableHandlerMethod {
+    private final ThreadPoolTaskExecutor executor;
+    private final int queueCapacity;
+
+    AsyncHandlerMethod(HandlerMethod handlerMethod, ThreadPoolTaskExecutor executor, int queueCapacity) {
+        super(handlerMethod);
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Выгрузки в виде потока (ResponseEntity со StreamingResponseBody) уже выполняются асинхронно,
+     * а служебные эндпоинты actuator остаются в потоке Tomcat.
+     */
+    static boolean supports(HandlerMethod handlerMethod) {
+        Class<?> returnType = handlerMethod.getReturnType().getParameterType();
+        return handlerMethod.getBeanType().isAnnotationPresent(RestController.class)
+                && !HttpEntity.class.isAssignableFrom(returnType)
+                && !StreamingResponseBody.class.isAssignableFrom(returnType);
+    }
+
+    @Override
+    public Object invokeForRequest(NativeWebRequest request, ModelAndViewContainer mavContainer,
+                                   Object... providedArgs) throws Exception {
+        Object[] args = getMethodArgumentValues(request, mavContainer, providedArgs);
+        // Очередь пула не ограничена, а переполнение проверяется здесь: отказ пула после начала
+        // асинхронной обработки Spring обработал бы как ошибку дважды
+        if (executor.getThreadPoolExecutor().getQueue().size() >= queueCapacity) {
+            throw new TaskRejectedException("Очередь запросов заполнена: " + queueCapacity);
+        }
+        return (Callable<Object>) () -> doInvoke(args);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.execution;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import ru.yandex.practicum.filmorate.metrics.QueryTracker;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Асинхронный режим выполнения запросов, включается свойством filmorate.execution.mode=async.
+ * Поток Tomcat только разбирает аргументы обработчика и освобождается, а сам обработчик выполняется
+ * в пуле из threads потоков - по числу соединений с базой, поэтому потоки не ждут соединение в пуле Hikari.
+ * Ожидающий запрос занимает место в очереди, а не поток; если в очереди больше queueCapacity задач,
+ * запрос сразу получает 503.
+ * <p>
+ * Это замена виртуальным потокам для Java 17: блокирующий JdbcTemplate остается, но число потоков
+ * не растет вместе с числом одновременных запросов.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "filmorate.execution.mode", havingValue = "async")
+public class ExecutionConfiguration {
+    /**
+     * Пул останавливается вместе с контекстом приложения: новые задачи не принимаются,
+     * а начатые запросы дорабатывают в пределах тайм-аута.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor requestExecutor(@Value("${filmorate.execution.async.threads}") int threads,
+                                                  @Value("${filmorate.execution.async.timeout}") Duration timeout) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("request-");
+        executor.setTaskDecorator(propagateContext());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(timeout.toMillis());
+        log.info("Запросы выполняются асинхронно в пуле из {} потоков", threads);
+        return executor;
+    }
+
+    @Bean
+    public WebMvcConfigurer asyncSupportConfigurer(ThreadPoolTaskExecutor requestExecutor,
+                                                   @Value("${filmorate.execution.async.timeout}") Duration timeout) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(requestExecutor);
+                configurer.setDefaultTimeout(timeout.toMillis());
+            }
+        };
+    }
+
+    @Bean
+    public WebMvcRegistrations asyncHandlerRegistrations(ThreadPoolTaskExecutor requestExecutor,
+                                                         @Value("${filmorate.execution.async.queue-capacity}") int queueCapacity) {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new RequestMappingHandlerAdapter() {
+                    @Override
+                    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+                        return AsyncHandlerMethod.supports(handlerMethod)
+                                ? new AsyncHandlerMethod(handlerMethod, requestExecutor, queueCapacity)
+                                : super.createInvocableHandlerMethod(handlerMethod);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Переносит в поток пула MDC (отбор запроса для подробного журнала) и трассировки SQL-запросов.
+     */
+    private static TaskDecorator propagateContext() {
+        return task -> {
+            Runnable traced = QueryTracker.propagate(task);
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            return () -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    traced.run();
+                } finally {
+                    MDC.clear();
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.execution.AsyncCompletion;
+import ru.yandex.practicum.filmorate.metrics.HandlerTagsContributor;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Одна строка журнала доступа на запрос вместо сообщений в каждом методе контроллеров:
+ * метод, путь, обработчик, статус и время в микросекундах в виде key=value. Асинхронный запрос
+ * записывается по его завершении.
+ * <p>
+ * Доля detailSampleRate запросов отбирается для подробного журнала: на время такого запроса в MDC
+ * выставляется sampled, и {@link SampledDetailTurboFilter} пропускает DEBUG-сообщения приложения.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AccessLogFilter extends OncePerRequestFilter {
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("ru.yandex.practicum.filmorate.access");
+
+    private final double detailSampleRate;
+
+    public AccessLogFilter(@Value("${filmorate.logging.detail-sample-rate:0}") double detailSampleRate) {
+        this.detailSampleRate = detailSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean sampled = detailSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < detailSampleRate;
+        if (sampled) {
+            MDC.put(SampledDetailTurboFilter.SAMPLED_KEY, "true");
+        }
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            boolean failedInFilter = failed;
+            AsyncCompletion.whenComplete(request, () -> logAccess(request, response, failedInFilter, start, sampled));
+            if (sampled) {
+                MDC.remove(SampledDetailTurboFilter.SAMPLED_KEY);
+            }
+        }
+    }
+
+    private static void logAccess(HttpServletRequest request, HttpServletResponse response, boolean failed,
+                                  long start, boolean sampled) {
+        if (ACCESS_LOG.isInfoEnabled()) {
+            ACCESS_LOG.info("method={} uri={} handler={} status={} durationUs={} sampled={}",
+                    request.getMethod(), request.getRequestURI(),
+                    HandlerTagsContributor.handlerName(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE)),
+                    failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                    (System.nanoTime() - start) / 1000, sampled);
+        }
+    }
+}
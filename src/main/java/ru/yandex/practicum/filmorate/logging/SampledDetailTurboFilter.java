@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Пропускает подробные DEBUG-сообщения приложения для запросов, отобранных {@link AccessLogFilter}
+ * (в MDC есть ключ sampled), при любом уровне логгера. Остальные события не затрагивает.
+ */
+public class SampledDetailTurboFilter extends TurboFilter {
+    static final String SAMPLED_KEY = "sampled";
+    private static final String APPLICATION_PACKAGE = "ru.yandex.practicum.filmorate.";
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.DEBUG || !logger.getName().startsWith(APPLICATION_PACKAGE)) {
+            return FilterReply.NEUTRAL;
+        }
+        return MDC.get(SAMPLED_KEY) != null ? FilterReply.ACCEPT : FilterReply.NEUTRAL;
+    }
+}
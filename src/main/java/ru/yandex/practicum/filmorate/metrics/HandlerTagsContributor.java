@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Добавляет к http.server.requests тег handler с методом контроллера, например FilmController.getFilmById.
+ */
+@Component
+public class HandlerTagsContributor implements WebMvcTagsContributor {
+    private static final Tag NONE = Tag.of("handler", "none");
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                 Throwable exception) {
+        return Tags.of(handlerTag(handler));
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.of(handlerTag(handler));
+    }
+
+    /**
+     * @return имя метода контроллера в виде Класс.метод или none, если запрос обработан не контроллером
+     */
+    public static String handlerName(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return NONE.getValue();
+        }
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        return handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+    }
+
+    private static Tag handlerTag(Object handler) {
+        return handler instanceof HandlerMethod ? Tag.of("handler", handlerName(handler)) : NONE;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Метрики SQL-запросов. Источник данных оборачивается прокси, который замеряет каждый запрос,
+ * метрики пула соединений (hikaricp.*) Spring Boot снимает через этот прокси с исходного пула.
+ * Если включена трассировка, тот же прокси передает запросы в {@link QueryTracker}.
+ */
+@Configuration
+public class MetricsConfiguration {
+    @Bean
+    public static BeanPostProcessor queryMetricsDataSourcePostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${filmorate.jdbc.tracing.enabled:false}") boolean tracingEnabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource) {
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+                            .listener(new QueryMetricsListener(meterRegistry));
+                    if (tracingEnabled) {
+                        builder.listener(new QueryTracingListener());
+                    }
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Поиск лишних и медленных SQL-запросов в HTTP-запросах, включается свойством filmorate.jdbc.tracing.enabled.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.jdbc.tracing.enabled", havingValue = "true")
+    public FilterRegistrationBean<QueryTracingFilter> queryTracingFilter(
+            @Value("${filmorate.jdbc.tracing.max-statements:20}") int maxStatements,
+            @Value("${filmorate.jdbc.tracing.max-duration:500ms}") Duration maxDuration,
+            @Value("${filmorate.jdbc.tracing.repeated-statements:10}") int repeatedStatements) {
+        FilterRegistrationBean<QueryTracingFilter> registration = new FilterRegistrationBean<>(
+                new QueryTracingFilter(maxStatements, maxDuration, repeatedStatements));
+        // Внутри журнала доступа, чтобы предупреждение попало в подробный журнал отобранных запросов
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    @Bean
+    public MeterFilter queryTagsLimit() {
+        return MeterFilter.maximumAllowableTags("filmorate.jdbc.query", "sql", QueryMetricsListener.MAX_QUERY_TAGS, MeterFilter.deny());
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.noop.NoopTimer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Время выполнения каждого SQL-запроса: таймер filmorate.jdbc.query с тегами sql и batch.
+ * Текст запроса нормализуется: пробелы схлопываются, а IN-списки любой длины сводятся к "?...",
+ * поэтому один запрос с разным числом параметров попадает в одну метрику и в один элемент кэша таймеров.
+ */
+class QueryMetricsListener implements QueryExecutionListener {
+    private static final String START = "filmorate.query.start";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    // Не больше стольких разных текстов запросов в метриках, остальные запросы не учитываются
+    static final int MAX_QUERY_TAGS = 200;
+    // Каждый текст может выполняться и отдельно, и пакетом. Сверх этого числа ключей запросы получают
+    // общий пустой таймер, поэтому ни кэш, ни реестр не растут без границ
+    private static final int MAX_CACHED_TIMERS = 2 * MAX_QUERY_TAGS;
+    private static final Timer NOOP_TIMER = new NoopTimer(new Meter.Id("filmorate.jdbc.query", Tags.empty(),
+            null, null, Meter.Type.TIMER));
+
+    // Реестр берется при первом запросе: пул соединений создается раньше, чем метрики
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    QueryMetricsListener(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START, Long.class);
+        if (start == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        String sql = normalize(queryInfoList.get(0).getQuery());
+        String key = execInfo.isBatch() ? "batch:" + sql : sql;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = register(key, sql, execInfo.isBatch());
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Таймер регистрируется один раз на ключ. Запросы сверх ограничения тегов реестр отклоняет и возвращает
+     * пустой таймер, он тоже кэшируется, чтобы не обращаться к реестру при каждом выполнении.
+     */
+    private Timer register(String key, String sql, boolean batch) {
+        if (timers.size() >= MAX_CACHED_TIMERS) {
+            return NOOP_TIMER;
+        }
+        return timers.computeIfAbsent(key, ignored -> Timer.builder("filmorate.jdbc.query")
+                .description("Время выполнения SQL-запросов")
+                .tag("sql", sql)
+                .tag("batch", String.valueOf(batch))
+                .register(meterRegistry.getObject()));
+    }
+
+    static String normalize(String sql) {
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return PARAMETER_LIST.matcher(normalized).replaceAll("?...");
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQL-запросы, выполненные потоком между {@link QueryTracker#start()} и {@link #stop()}.
+ * Одинаковые после нормализации запросы собираются вместе с количеством, временем и местами вызова.
+ */
+public class QueryTrace implements AutoCloseable {
+    private static final int MAX_CALL_SITES = 3;
+
+    private final Map<String, Statement> statements = new LinkedHashMap<>();
+    private int count;
+    private long durationNanos;
+
+    public static class Statement {
+        private final String sql;
+        private final Set<String> callSites = new LinkedHashSet<>();
+        private int count;
+        private long durationNanos;
+
+        Statement(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public Duration getDuration() {
+            return Duration.ofNanos(durationNanos);
+        }
+
+        public Set<String> getCallSites() {
+            return Collections.unmodifiableSet(callSites);
+        }
+    }
+
+    void record(String sql, long nanos, String callSite) {
+        count++;
+        durationNanos += nanos;
+        Statement statement = statements.computeIfAbsent(sql, Statement::new);
+        statement.count++;
+        statement.durationNanos += nanos;
+        if (callSite != null && statement.callSites.size() < MAX_CALL_SITES) {
+            statement.callSites.add(callSite);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Duration getDuration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    /**
+     * @return запросы по убыванию количества выполнений
+     */
+    public List<Statement> getStatements() {
+        List<Statement> result = new ArrayList<>(statements.values());
+        result.sort(Comparator.comparingInt(Statement::getCount).reversed());
+        return result;
+    }
+
+    /**
+     * Запросы, выполненные не меньше threshold раз, - признак N+1: запрос в цикле по строкам.
+     */
+    public List<Statement> getRepeatedStatements(int threshold) {
+        List<Statement> result = new ArrayList<>();
+        for (Statement statement : getStatements()) {
+            if (statement.count >= threshold) {
+                result.add(statement);
+            }
+        }
+        return result;
+    }
+
+    public void stop() {
+        QueryTracker.stop(this);
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.execution.AsyncCompletion;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Трассирует SQL-запросы каждого HTTP-запроса и пишет предупреждение, если их больше maxStatements,
+ * они заняли больше maxDuration или один и тот же запрос повторился repeatedStatements раз (N+1).
+ */
+@Slf4j
+class QueryTracingFilter extends OncePerRequestFilter {
+    private final int maxStatements;
+    private final Duration maxDuration;
+    private final int repeatedStatements;
+
+    QueryTracingFilter(int maxStatements, Duration maxDuration, int repeatedStatements) {
+        this.maxStatements = maxStatements;
+        this.maxDuration = maxDuration;
+        this.repeatedStatements = repeatedStatements;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryTrace trace = QueryTracker.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            // В асинхронном режиме запросы к базе выполняются в пуле, куда трассировка переносится при отправке задачи
+            trace.stop();
+            AsyncCompletion.whenComplete(request, () -> report(request, trace));
+        }
+    }
+
+    private void report(HttpServletRequest request, QueryTrace trace) {
+        boolean tooMany = trace.getCount() > maxStatements;
+        boolean tooSlow = trace.getDuration().compareTo(maxDuration) > 0;
+        boolean repeated = !trace.getRepeatedStatements(repeatedStatements).isEmpty();
+        if (!tooMany && !tooSlow && !repeated) {
+            return;
+        }
+        StringBuilder message = new StringBuilder();
+        message.append(String.format("Запрос %s %s: %d SQL-запросов за %d мс%s", request.getMethod(),
+                request.getRequestURI(), trace.getCount(), trace.getDuration().toMillis(),
+                repeated ? ", возможен N+1" : ""));
+        for (QueryTrace.Statement statement : trace.getStatements()) {
+            message.append(String.format("%n  x%d %d мс %s %s", statement.getCount(),
+                    statement.getDuration().toMillis(), statement.getSql(), statement.getCallSites()));
+        }
+        log.warn(message.toString());
+    }
+}
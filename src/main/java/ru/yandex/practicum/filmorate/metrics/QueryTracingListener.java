@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+/**
+ * Записывает SQL-запросы в трассировки текущего потока вместе с местом вызова в коде приложения.
+ * Стек просматривается только при активной трассировке.
+ */
+class QueryTracingListener implements QueryExecutionListener {
+    private static final String START = "filmorate.tracing.start";
+    private static final String APPLICATION_PACKAGE = "ru.yandex.practicum.filmorate.";
+    private static final String METRICS_PACKAGE = APPLICATION_PACKAGE + "metrics.";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (QueryTracker.isActive()) {
+            execInfo.addCustomValue(START, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START, Long.class);
+        if (start == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        QueryTracker.record(QueryMetricsListener.normalize(queryInfoList.get(0).getQuery()),
+                System.nanoTime() - start, findCallSite());
+    }
+
+    // Первый кадр стека из кода приложения, не считая прокси и самих метрик
+    private static String findCallSite() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                        && !frame.getClassName().startsWith(METRICS_PACKAGE)
+                        && !frame.getClassName().contains("$$"))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse(null));
+    }
+}
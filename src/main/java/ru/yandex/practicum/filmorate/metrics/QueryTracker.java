@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Подсчет SQL-запросов текущего потока. Запросы записываются во все начатые в потоке трассировки,
+ * поэтому тест может начать свою трассировку вокруг запроса к эндпоинту, который трассирует фильтр.
+ * Запросы учитываются, только если включено свойство filmorate.jdbc.tracing.enabled.
+ * <pre>
+ * QueryTrace trace = QueryTracker.start();
+ * filmStorage.findAllFilms();
+ * trace.stop();
+ * assertThat(trace.getCount()).isEqualTo(2);
+ * </pre>
+ */
+public final class QueryTracker {
+    private static final ThreadLocal<Deque<QueryTrace>> TRACES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryTracker() {
+    }
+
+    public static QueryTrace start() {
+        QueryTrace trace = new QueryTrace();
+        TRACES.get().push(trace);
+        return trace;
+    }
+
+    /**
+     * Переносит начатые в текущем потоке трассировки в задачу, которая выполнится в другом потоке,
+     * например в обработчик асинхронного HTTP-запроса.
+     */
+    public static Runnable propagate(Runnable task) {
+        Deque<QueryTrace> current = TRACES.get();
+        if (current.isEmpty()) {
+            TRACES.remove();
+            return task;
+        }
+        Deque<QueryTrace> traces = new ArrayDeque<>(current);
+        return () -> {
+            TRACES.set(new ArrayDeque<>(traces));
+            try {
+                task.run();
+            } finally {
+                TRACES.remove();
+            }
+        };
+    }
+
+    static void stop(QueryTrace trace) {
+        Deque<QueryTrace> traces = TRACES.get();
+        traces.remove(trace);
+        if (traces.isEmpty()) {
+            TRACES.remove();
+        }
+    }
+
+    static boolean isActive() {
+        return !TRACES.get().isEmpty();
+    }
+
+    static void record(String sql, long nanos, String callSite) {
+        for (QueryTrace trace : TRACES.get()) {
+            trace.record(sql, nanos, callSite);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Ответ на запрос нескольких объектов по id: найденные объекты в порядке запроса
+ * и id, которых нет в базе.
+ */
+@Data
+@AllArgsConstructor
+public class BatchResponse<T> {
+    private List<T> items;
+    private List<Integer> missing;
+
+    public static <T> BatchResponse<T> of(int[] ids, List<T> items, ToIntFunction<T> idOf) {
+        Set<Integer> found = new HashSet<>();
+        items.forEach(item -> found.add(idOf.applyAsInt(item)));
+        List<Integer> missing = new ArrayList<>();
+        for (int id : ids) {
+            if (!found.contains(id)) {
+                missing.add(id);
+            }
+        }
+        return new BatchResponse<>(items, missing);
+    }
+}
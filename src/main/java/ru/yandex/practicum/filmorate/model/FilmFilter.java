@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Фильтры списка фильмов. Незаполненное поле означает отсутствие ограничения.
+ */
+@Value
+@Builder
+public class FilmFilter {
+    Integer genreId;
+    Integer mpaId;
+    Integer yearFrom;
+    Integer yearTo;
+    Integer minLikes;
+
+    public boolean isEmpty() {
+        return genreId == null && mpaId == null && yearFrom == null && yearTo == null && minLikes == null;
+    }
+
+    public boolean hasFacets() {
+        return genreId != null || mpaId != null || yearFrom != null || yearTo != null;
+    }
+}
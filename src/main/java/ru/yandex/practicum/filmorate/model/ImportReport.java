@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог импорта: сколько строк прочитано, записано, пропущено как уже существующие и отклонено.
+ * Ошибки приводятся с номером строки входных данных, их список ограничен.
+ */
+@Data
+public class ImportReport {
+    private int rows;
+    private int imported;
+    private int skipped;
+    private int failed;
+    private long durationMs;
+    private long rowsPerSecond;
+    private final List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int line;
+        private String message;
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.storage.dao.ExportStorage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Выгрузка фильмов, пользователей, лайков и дружбы из одного снимка базы.
+ * <ul>
+ *     <li>NDJSON - объект на строку, таблица указана в поле "table";</li>
+ *     <li>CSV - таблицы идут подряд, каждая начинается строкой заголовка "table,колонки...",
+ *     первая колонка строк данных - имя таблицы.</li>
+ * </ul>
+ * Строки пишутся в поток по мере чтения, поэтому расход памяти не зависит от размера базы.
+ */
+@Slf4j
+@Service
+public class ExportService {
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String TABLE_FIELD = "table";
+
+    private final ExportStorage exportStorage;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(ExportStorage exportStorage, ObjectMapper objectMapper) {
+        this.exportStorage = exportStorage;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return список таблиц для выгрузки, по умолчанию - все таблицы
+     */
+    public List<String> checkTables(List<String> tables) {
+        if (tables == null || tables.isEmpty()) {
+            return exportStorage.getTables();
+        }
+        List<String> result = new ArrayList<>();
+        for (String table : tables) {
+            String name = table.trim().toLowerCase(Locale.ROOT);
+            if (!exportStorage.getTables().contains(name)) {
+                throw new ValidateException("Таблица " + table + " не выгружается, доступны: " + exportStorage.getTables());
+            }
+            if (!result.contains(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    public Format checkFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidateException("Неизвестный формат выгрузки: " + format);
+        }
+    }
+
+    public void export(List<String> tables, Format format, OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+        if (format == Format.NDJSON) {
+            exportNdjson(tables, outputStream, rows);
+        } else {
+            exportCsv(tables, outputStream, rows);
+        }
+        log.info("Выгрузка {} в формате {}: {} строк за {} мс", tables, format, rows[0],
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void exportNdjson(List<String> tables, OutputStream outputStream, long[] rows) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+            exportStorage.exportSnapshot(tables, new ExportStorage.RowHandler() {
+                private String table;
+                private List<String> columns;
+
+                @Override
+                public void startTable(String table, List<String> columns) {
+                    this.table = table;
+                    this.columns = columns;
+                }
+
+                @Override
+                public void row(Object[] values) {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeStringField(TABLE_FIELD, table);
+                        for (int i = 0; i < values.length; i++) {
+                            generator.writeFieldName(columns.get(i));
+                            generator.writeObject(values[i]);
+                        }
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    rows[0]++;
+                }
+            });
+        }
+    }
+
+    private void exportCsv(List<String> tables, OutputStream outputStream, long[] rows) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+            exportStorage.exportSnapshot(tables, new ExportStorage.RowHandler() {
+                private String table;
+
+                @Override
+                public void startTable(String table, List<String> columns) {
+                    this.table = table;
+                    List<Object> header = new ArrayList<>();
+                    header.add(TABLE_FIELD);
+                    header.addAll(columns);
+                    writeCsvLine(writer, header.toArray());
+                }
+
+                @Override
+                public void row(Object[] values) {
+                    Object[] line = new Object[values.length + 1];
+                    line[0] = table;
+                    System.arraycopy(values, 0, line, 1, values.length);
+                    writeCsvLine(writer, line);
+                    rows[0]++;
+                }
+            });
+        }
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escapeCsv(values[i].toString()));
+                }
+            }
+            writer.write("\r\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Поле в кавычках, если в нем есть запятая, кавычка или перевод строки (RFC 4180)
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -3,21 +3,30 @@ package ru.yandex.practicum.filmorate.service;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.dao.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final LikeWriteBuffer likeWriteBuffer;
 
-    public FilmService(FilmStorage filmStorage, UserStorage userStorage) {
+    public FilmService(FilmStorage filmStorage, UserStorage userStorage, LikeWriteBuffer likeWriteBuffer) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        this.likeWriteBuffer = likeWriteBuffer;
     }
 
     public Film createFilm(Film film) {
@@ -25,7 +34,9 @@ public class FilmService {
     }
 
     public Film updateFilm(Film film) {
-        findFilmById(film.getId());
+        if (!filmStorage.existsById(film.getId())) {
+            throw new ObjectNotFoundException("Фильм с id " + film.getId() + " не найден");
+        }
         return filmStorage.updateFilm(film);
     }
 
@@ -33,14 +44,42 @@ public class FilmService {
         return filmStorage.findAllFilms();
     }
 
+    public Collection<Film> findFilms(Integer after, Integer size, FilmFilter filter) {
+        if (after != null && after < 0) {
+            throw new ValidateException("Параметр after не может быть отрицательным");
+        }
+        if (!filter.isEmpty()) {
+            checkFilter(filter);
+            // Без размера страницы возвращается первая страница размера по умолчанию
+            return filmStorage.findFilms(filter, after == null ? 0 : after, checkPageSize(size));
+        }
+        if (after == null && size == null) {
+            return filmStorage.findAllFilms();
+        }
+        return filmStorage.findFilms(after == null ? 0 : after, checkPageSize(size));
+    }
+
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllFilms(consumer);
+    }
+
+    public BatchResponse<Film> findFilmsByIds(List<Integer> ids) {
+        int[] uniqueIds = checkIds(ids);
+        return BatchResponse.of(uniqueIds, filmStorage.findFilmsByIds(uniqueIds), Film::getId);
+    }
+
     public Optional<Film> findFilmById(int id) {
         return filmStorage.findFilmById(id);
     }
 
     public void addLike(int filmId, int userId) {
-        if (findFilmById(filmId).isPresent()) {
-            if (userStorage.findUserById(userId).isPresent()) {
-                filmStorage.addLike(filmId, userId);
+        if (filmStorage.existsById(filmId)) {
+            if (userStorage.existsById(userId)) {
+                if (likeWriteBuffer.isEnabled()) {
+                    likeWriteBuffer.addLike(filmId, userId);
+                } else {
+                    filmStorage.addLike(filmId, userId);
+                }
             } else {
                 throw new ObjectNotFoundException("Пользователь с id " + userId + " не найден");
             }
@@ -50,9 +89,13 @@ public class FilmService {
     }
 
     public void removeLike(int filmId, int userId) {
-        if (findFilmById(filmId).isPresent()) {
-            if (userStorage.findUserById(userId).isPresent()) {
-                filmStorage.removeLike(filmId, userId);
+        if (filmStorage.existsById(filmId)) {
+            if (userStorage.existsById(userId)) {
+                if (likeWriteBuffer.isEnabled()) {
+                    likeWriteBuffer.removeLike(filmId, userId);
+                } else {
+                    filmStorage.removeLike(filmId, userId);
+                }
             } else {
                 throw new ObjectNotFoundException("Пользователь с id " + userId + " не найден");
             }
@@ -61,11 +104,64 @@ public class FilmService {
         }
     }
 
-    public Collection<Film> getListOfPopularFilms(String count) {
+    public Collection<Film> getListOfPopularFilms(String count, FilmFilter filter) {
         int countAsInt = Integer.parseInt(count);
         if (countAsInt < 0) {
             throw new ValidateException("Количество фильмов не может быть меньше 0");
         }
+        if (!filter.isEmpty()) {
+            checkFilter(filter);
+            return filmStorage.getPopular(countAsInt, filter);
+        }
         return filmStorage.getPopular(countAsInt);
     }
+
+    private void checkFilter(FilmFilter filter) {
+        if (filter.getYearFrom() != null && filter.getYearTo() != null && filter.getYearFrom() > filter.getYearTo()) {
+            throw new ValidateException("Начальный год не может быть больше конечного");
+        }
+        if (filter.getMinLikes() != null && filter.getMinLikes() < 0) {
+            throw new ValidateException("Количество лайков не может быть меньше 0");
+        }
+    }
+
+    public Collection<Film> searchFilms(String query, String by, int count) {
+        if (count <= 0 || count > MAX_BATCH_SIZE) {
+            throw new ValidateException("Количество фильмов должно быть от 1 до " + MAX_BATCH_SIZE);
+        }
+        boolean byTitle = false;
+        boolean byDescription = false;
+        for (String field : by.split(",")) {
+            switch (field.trim()) {
+                case "title":
+                    byTitle = true;
+                    break;
+                case "description":
+                    byDescription = true;
+                    break;
+                default:
+                    throw new ValidateException("Поиск возможен только по title и description");
+            }
+        }
+        return filmStorage.searchFilms(query, byTitle, byDescription, count);
+    }
+
+    private int checkPageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size <= 0 || size > MAX_BATCH_SIZE) {
+            throw new ValidateException("Размер страницы должен быть от 1 до " + MAX_BATCH_SIZE);
+        }
+        return size;
+    }
+
+    private int[] checkIds(List<Integer> ids) {
+        // Повторы убираются с сохранением порядка первого упоминания
+        int[] uniqueIds = ids.stream().mapToInt(Integer::intValue).distinct().toArray();
+        if (uniqueIds.length > MAX_BATCH_SIZE) {
+            throw new ValidateException("За один запрос можно получить не больше " + MAX_BATCH_SIZE + " объектов");
+        }
+        return uniqueIds;
+    }
 }
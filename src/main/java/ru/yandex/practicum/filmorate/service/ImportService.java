@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friends;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.UserStorage;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт из NDJSON: один объект JSON на строку. Строки читаются потоком и записываются
+ * пакетами по chunkSize, каждый пакет - одна транзакция. Если пакет не записался целиком,
+ * его строки записываются по одной, чтобы отклонить только ошибочные и не прерывать импорт.
+ */
+@Slf4j
+@Service
+public class ImportService {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public ImportService(FilmStorage filmStorage,
+                         UserStorage userStorage,
+                         LikeWriteBuffer likeWriteBuffer,
+                         ObjectMapper objectMapper,
+                         Validator validator,
+                         @Value("${filmorate.import.chunk-size:1000}") int chunkSize,
+                         @Value("${filmorate.import.max-errors:100}") int maxErrors) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета импорта должен быть больше 0");
+        }
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ImportReport importFilms(InputStream input) {
+        return importRows("фильмов", input, Film.class, films -> filmStorage.importFilms(films).size());
+    }
+
+    public ImportReport importUsers(InputStream input) {
+        return importRows("пользователей", input, User.class, users -> userStorage.importUsers(users).size());
+    }
+
+    public ImportReport importLikes(InputStream input) {
+        // Отложенные лайки записываются до импорта, чтобы не посчитать один лайк дважды
+        if (likeWriteBuffer.isEnabled()) {
+            likeWriteBuffer.flush();
+        }
+        return importRows("лайков", input, Like.class, filmStorage::importLikes);
+    }
+
+    public ImportReport importFriends(InputStream input) {
+        return importRows("запросов в друзья", input, Friends.class, userStorage::importFriends);
+    }
+
+    /**
+     * @param writer записывает пакет строк в одной транзакции и возвращает число записанных,
+     *               строки, которые уже есть в базе, не записываются
+     */
+    private <T> ImportReport importRows(String name, InputStream input, Class<T> type, ToIntFunction<List<T>> writer) {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        List<Integer> lines = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.setRows(report.getRows() + 1);
+                T row = parse(line, type, lineNumber, report);
+                if (row == null) {
+                    continue;
+                }
+                chunk.add(row);
+                lines.add(lineNumber);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, lines, writer, report);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeChunk(chunk, lines, writer, report);
+
+        long durationNanos = System.nanoTime() - start;
+        report.setDurationMs(durationNanos / 1_000_000);
+        report.setRowsPerSecond(durationNanos == 0 ? 0 : report.getRows() * 1_000_000_000L / durationNanos);
+        report.setSkipped(report.getRows() - report.getImported() - report.getFailed());
+        log.info("Импорт {}: строк {}, записано {}, пропущено {}, отклонено {}, {} мс, {} строк/с", name,
+                report.getRows(), report.getImported(), report.getSkipped(), report.getFailed(),
+                report.getDurationMs(), report.getRowsPerSecond());
+        return report;
+    }
+
+    private <T> T parse(String line, Class<T> type, int lineNumber, ImportReport report) {
+        T row;
+        try {
+            row = objectMapper.readValue(line, type);
+        } catch (JsonProcessingException e) {
+            addError(report, lineNumber, e.getOriginalMessage());
+            return null;
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            addError(report, lineNumber, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return row;
+    }
+
+    private <T> void writeChunk(List<T> chunk, List<Integer> lines, ToIntFunction<List<T>> writer,
+                                ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            report.setImported(report.getImported() + writer.applyAsInt(chunk));
+        } catch (DataAccessException e) {
+            log.debug("Пакет из {} строк не записан, строки записываются по одной", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    report.setImported(report.getImported() + writer.applyAsInt(List.of(chunk.get(i))));
+                } catch (DataAccessException rowException) {
+                    addError(report, lines.get(i), NestedExceptionUtils.getMostSpecificCause(rowException).getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        lines.clear();
+    }
+
+    private void addError(ImportReport report, int line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxErrors) {
+            report.getErrors().add(new ImportReport.RowError(line, message));
+        }
+    }
+}
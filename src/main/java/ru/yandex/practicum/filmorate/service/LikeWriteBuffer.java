@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.NotSavedException;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Буфер отложенной записи лайков. Лайки сразу учитываются в индексе популярности, а в таблицы
+ * film_user и film записываются пакетами - когда буфер заполнится или истечет интервал сброса.
+ * <p>
+ * Режимы надежности:
+ * <ul>
+ *     <li>ASYNC - запрос завершается сразу, при аварийной остановке теряются лайки за последний интервал;</li>
+ *     <li>GROUP_COMMIT - запрос ждет, пока пакет с его лайком будет записан в базу. Если лайк не записался
+ *     или запись не завершилась за десять интервалов сброса, запрос завершается ошибкой {@link NotSavedException}.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+    public enum Durability {
+        ASYNC,
+        GROUP_COMMIT
+    }
+
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    private final LikesIndex likesIndex;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Durability durability;
+
+    // Блокировка на запись берется только на время смены поколения буфера,
+    // поэтому лайки не ждут записи пакета в базу
+    private final ReadWriteLock generationLock = new ReentrantReadWriteLock();
+    // true - лайк поставлен, false - лайк удален
+    private volatile Map<Like, Boolean> pending = new ConcurrentHashMap<>();
+    // Пакет, который сейчас записывается в базу
+    private volatile Map<Like, Boolean> inFlight = Map.of();
+    // Завершается набором лайков пакета, которые не удалось записать
+    private volatile CompletableFuture<Set<Like>> nextFlush = new CompletableFuture<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private ScheduledExecutorService flushExecutor;
+
+    public LikeWriteBuffer(FilmStorage filmStorage,
+                           PopularityIndex popularityIndex,
+                           LikesIndex likesIndex,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                           @Value("${filmorate.likes.write-behind.durability:ASYNC}") Durability durability) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex;
+        this.likesIndex = likesIndex;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.durability = durability;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Включена отложенная запись лайков: пакет {}, интервал {} мс, режим {}", batchSize, flushIntervalMs, durability);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addLike(int filmId, int userId) {
+        change(new Like(filmId, userId), true);
+    }
+
+    public void removeLike(int filmId, int userId) {
+        change(new Like(filmId, userId), false);
+    }
+
+    private void change(Like like, boolean liked) {
+        CompletableFuture<Set<Like>> flush;
+        generationLock.readLock().lock();
+        try {
+            apply(like, liked);
+            popularityIndex.changeLikes(like.getFilmId(), liked ? 1 : -1);
+            updateLikesIndex(like, liked);
+            flush = nextFlush;
+        } finally {
+            generationLock.readLock().unlock();
+        }
+
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flushQuietly);
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            awaitFlush(flush, like);
+        }
+    }
+
+    /**
+     * Заносит действие в буфер без блокировок: состояние в базе читается до изменения карты,
+     * а изменение выполняется только если лайк в буфере не поменялся за это время.
+     */
+    private void apply(Like like, boolean liked) {
+        Boolean stored = null;
+        while (true) {
+            Boolean current = pending.get(like);
+            if (current == null && stored == null) {
+                // Пока держится блокировка поколения, состояние в базе меняет только запись inFlight
+                stored = isStored(like);
+            }
+            boolean likedNow = current != null ? current : stored;
+            if (likedNow == liked) {
+                throw new ValidateException(liked ? "Вы уже поставили лайк этому фильму" : "Вы не ставили лайк этому фильму");
+            }
+            // Противоположное действие над еще не записанным лайком отменяет его
+            boolean applied = current != null ? pending.remove(like, current) : pending.putIfAbsent(like, liked) == null;
+            if (applied) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Записывает накопленные лайки в базу. Метод синхронизирован и может вызываться из любого потока:
+     * из потока сброса, при остановке и перед импортом лайков, которому нужны уже записанные лайки.
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        Map<Like, Boolean> batch;
+        CompletableFuture<Set<Like>> flush;
+        generationLock.writeLock().lock();
+        try {
+            batch = pending;
+            flush = nextFlush;
+            if (batch.isEmpty()) {
+                nextFlush.complete(Set.of());
+                nextFlush = new CompletableFuture<>();
+                return;
+            }
+            inFlight = batch;
+            pending = new ConcurrentHashMap<>();
+            nextFlush = new CompletableFuture<>();
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+
+        Set<Like> failed = null;
+        try {
+            failed = save(batch);
+        } finally {
+            generationLock.writeLock().lock();
+            try {
+                inFlight = Map.of();
+            } finally {
+                generationLock.writeLock().unlock();
+            }
+            if (failed != null) {
+                flush.complete(failed);
+            } else {
+                flush.completeExceptionally(new NotSavedException("Пакет лайков не записан в базу"));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Буфер лайков сброшен при остановке приложения");
+    }
+
+    private boolean isStored(Like like) {
+        Boolean inFlightState = inFlight.get(like);
+        return inFlightState != null ? inFlightState : filmStorage.hasLike(like.getFilmId(), like.getUserId());
+    }
+
+    /**
+     * @return лайки, которые не удалось записать
+     */
+    private Set<Like> save(Map<Like, Boolean> batch) {
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        batch.forEach((like, liked) -> (liked ? added : removed).add(like));
+        try {
+            filmStorage.saveLikes(added, removed);
+            return Set.of();
+        } catch (RuntimeException e) {
+            // Пакет целиком не записался - записываем лайки по одному, чтобы потерять только ошибочные
+            log.warn("Не удалось записать пакет из {} лайков, запись по одному: {}", batch.size(), e.getMessage());
+            Set<Like> failed = new HashSet<>();
+            batch.forEach((like, liked) -> {
+                if (!saveOne(like, liked)) {
+                    failed.add(like);
+                }
+            });
+            return failed;
+        }
+    }
+
+    private boolean saveOne(Like like, boolean liked) {
+        try {
+            filmStorage.saveLikes(liked ? List.of(like) : List.of(), liked ? List.of() : List.of(like));
+            return true;
+        } catch (RuntimeException e) {
+            popularityIndex.changeLikes(like.getFilmId(), liked ? -1 : 1);
+            updateLikesIndex(like, !liked);
+            log.error("Лайк пользователя с id: {} фильму с id: {} не сохранен: {}", like.getUserId(), like.getFilmId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void updateLikesIndex(Like like, boolean liked) {
+        if (liked) {
+            likesIndex.addLike(like.getFilmId(), like.getUserId());
+        } else {
+            likesIndex.removeLike(like.getFilmId(), like.getUserId());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при записи буфера лайков", e);
+        }
+    }
+
+    private void awaitFlush(CompletableFuture<Set<Like>> flush, Like like) {
+        Set<Like> failed;
+        try {
+            failed = flush.get(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotSavedException("Ожидание записи лайка в базу прервано");
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Не дождались записи лайка в базу: {}", e.toString());
+            throw new NotSavedException("Лайк не записан в базу");
+        }
+        if (failed.contains(like)) {
+            throw new NotSavedException("Лайк не записан в базу");
+        }
+    }
+}
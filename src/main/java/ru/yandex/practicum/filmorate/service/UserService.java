@@ -1,18 +1,36 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.dao.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
 
-    public UserService(UserStorage userStorage) {
+    public UserService(UserStorage userStorage, FilmStorage filmStorage) {
         this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+    }
+
+    public BatchResponse<User> findUsersByIds(List<Integer> ids) {
+        int[] uniqueIds = checkIds(ids);
+        return BatchResponse.of(uniqueIds, userStorage.findUsersByIds(uniqueIds), User::getId);
     }
 
     public Optional<User> findUserById(int id) {
@@ -23,19 +41,54 @@ public class UserService {
         return userStorage.findAllUsers();
     }
 
+    public Collection<User> findUsers(Integer after, Integer size) {
+        if (after == null && size == null) {
+            return userStorage.findAllUsers();
+        }
+        return userStorage.findUsers(after == null ? 0 : after, checkPageSize(size));
+    }
+
+    public void streamAllUsers(Consumer<User> consumer) {
+        userStorage.streamAllUsers(consumer);
+    }
+
     public Collection<User> findUsersFriends(int id) {
-        findUserById(id);
+        checkUserExists(id);
         return userStorage.findUsersFriends(id);
     }
 
     public Collection<User> getListOfCommonFriends(int id, int otherId) {
-        findUserById(id);
-        findUserById(otherId);
+        checkUserExists(id);
+        checkUserExists(otherId);
         return userStorage.findCommonFriends(id, otherId);
     }
 
+    public Collection<User> findRecommendedFriends(int id, int count) {
+        checkUserExists(id);
+        if (count <= 0 || count > MAX_BATCH_SIZE) {
+            throw new ValidateException("Количество рекомендаций должно быть от 1 до " + MAX_BATCH_SIZE);
+        }
+        return userStorage.findRecommendedFriends(id, count);
+    }
+
+    public Collection<Film> findRecommendedFilms(int id, int count) {
+        checkUserExists(id);
+        if (count <= 0 || count > MAX_BATCH_SIZE) {
+            throw new ValidateException("Количество рекомендаций должно быть от 1 до " + MAX_BATCH_SIZE);
+        }
+        return filmStorage.findRecommendedFilms(id, count);
+    }
+
+    /**
+     * Удаляет пользователя и его лайки в одной транзакции. Внешний ключ film_user не удаляет лайки
+     * каскадно, поэтому лайк, поставленный во время удаления, откатывает всю транзакцию,
+     * а не пропадает без уменьшения счетчика.
+     */
+    @Transactional
     public void removeUser(int id) {
-        findUserById(id);
+        checkUserExists(id);
+        // Лайки удаляются до пользователя, чтобы уменьшить счетчики лайков фильмов
+        filmStorage.removeLikesOfUser(id);
         userStorage.removeUser(id);
     }
 
@@ -44,19 +97,44 @@ public class UserService {
     }
 
     public User updateUser(User user) {
-        findUserById(user.getId());
+        checkUserExists(user.getId());
         return userStorage.updateUser(user);
     }
 
     public void addFriend(int id, int friendId) {
-        findUserById(id);
-        findUserById(friendId);
+        checkUserExists(id);
+        checkUserExists(friendId);
         userStorage.addFriend(id, friendId);
     }
 
     public void removeFriend(int id, int friendId) {
-        findUserById(id);
-        findUserById(friendId);
+        checkUserExists(id);
+        checkUserExists(friendId);
         userStorage.removeFriend(id, friendId);
     }
+
+    private void checkUserExists(int id) {
+        if (!userStorage.existsById(id)) {
+            throw new ObjectNotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+
+    private int checkPageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size <= 0 || size > MAX_BATCH_SIZE) {
+            throw new ValidateException("Размер страницы должен быть от 1 до " + MAX_BATCH_SIZE);
+        }
+        return size;
+    }
+
+    private int[] checkIds(List<Integer> ids) {
+        // Повторы убираются с сохранением порядка первого упоминания
+        int[] uniqueIds = ids.stream().mapToInt(Integer::intValue).distinct().toArray();
+        if (uniqueIds.length > MAX_BATCH_SIZE) {
+            throw new ValidateException("За один запрос можно получить не больше " + MAX_BATCH_SIZE + " объектов");
+        }
+        return uniqueIds;
+    }
 }
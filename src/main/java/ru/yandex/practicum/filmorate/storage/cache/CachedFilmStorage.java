@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Кэш собранных фильмов перед {@link FilmDbStorage}. Размер кэша и время жизни записей ограничены,
+ * статистика попаданий и вытеснений публикуется в метриках как cache.* с тегом cache=films.
+ * <p>
+ * Количество лайков меняется слишком часто, чтобы сбрасывать из-за него кэш, поэтому оно
+ * всегда берется из индекса популярности, а закэшированный фильм отдается копией.
+ * <p>
+ * Фильм, прочитанный из базы до завершения updateFilm, не должен вернуться в кэш после его сброса.
+ * Одиночная загрузка защищена тем, что сброс ключа ждет завершения загрузки этого ключа,
+ * а пакетная кладет фильмы в кэш только если с начала чтения не завершилось ни одно обновление.
+ */
+@Primary
+@Component
+public class CachedFilmStorage implements FilmStorage {
+    private final FilmDbStorage filmDbStorage;
+    private final PopularityIndex popularityIndex;
+    private final Cache<Integer, Film> films;
+    // Количество завершенных обновлений фильмов
+    private final AtomicLong updates = new AtomicLong();
+
+    public CachedFilmStorage(FilmDbStorage filmDbStorage,
+                             PopularityIndex popularityIndex,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize,
+                             @Value("${filmorate.cache.films.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.filmDbStorage = filmDbStorage;
+        this.popularityIndex = popularityIndex;
+        this.films = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, films, "films");
+    }
+
+    @Override
+    public Optional<Film> findFilmById(int id) {
+        return Optional.of(withCurrentRate(films.get(id, filmId -> filmDbStorage.findFilmById(filmId).get())));
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        // Все фильмы с рейтингом MPA есть в индексе популярности, база проверяется только для остальных
+        return popularityIndex.contains(id) || films.getIfPresent(id) != null || filmDbStorage.existsById(id);
+    }
+
+    @Override
+    public List<Film> findFilmsByIds(int[] ids) {
+        Map<Integer, Film> found = new HashMap<>(films.getAllPresent(toList(ids)));
+        // Недостающие фильмы загружаются из базы одним пакетом
+        int[] missing = Arrays.stream(ids).filter(id -> !found.containsKey(id)).distinct().toArray();
+        if (missing.length > 0) {
+            long updatesBefore = updates.get();
+            for (Film film : filmDbStorage.findFilmsByIds(missing)) {
+                // Проверка выполняется под блокировкой ключа, поэтому сброс в updateFilm либо еще впереди,
+                // либо уже увеличил счетчик обновлений
+                films.asMap().compute(film.getId(),
+                        (id, cached) -> cached != null || updates.get() != updatesBefore ? cached : film);
+                found.put(film.getId(), film);
+            }
+        }
+        List<Film> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Film film = found.get(id);
+            if (film != null) {
+                result.add(withCurrentRate(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Film> findAllFilms() {
+        return filmDbStorage.findAllFilms();
+    }
+
+    @Override
+    public Collection<Film> findFilms(int afterId, int size) {
+        return filmDbStorage.findFilms(afterId, size);
+    }
+
+    @Override
+    public Collection<Film> findFilms(FilmFilter filter, int afterId, int size) {
+        return findFilmsByIds(filmDbStorage.findFilmIds(filter, afterId, size));
+    }
+
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmDbStorage.streamAllFilms(consumer);
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        return filmDbStorage.createFilm(film);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        films.invalidate(film.getId());
+        Film updated = filmDbStorage.updateFilm(film);
+        updates.incrementAndGet();
+        films.invalidate(film.getId());
+        return updated;
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        filmDbStorage.addLike(filmId, userId);
+    }
+
+    @Override
+    public void removeLike(int filmId, int userId) {
+        filmDbStorage.removeLike(filmId, userId);
+    }
+
+    @Override
+    public void removeLikesOfUser(int userId) {
+        filmDbStorage.removeLikesOfUser(userId);
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        return filmDbStorage.hasLike(filmId, userId);
+    }
+
+    @Override
+    public void saveLikes(Collection<Like> added, Collection<Like> removed) {
+        filmDbStorage.saveLikes(added, removed);
+    }
+
+    @Override
+    public List<Film> importFilms(List<Film> films) {
+        return filmDbStorage.importFilms(films);
+    }
+
+    @Override
+    public int importLikes(List<Like> likes) {
+        return filmDbStorage.importLikes(likes);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count) {
+        return findFilmsByIds(popularityIndex.findTopFilmIds(count));
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, FilmFilter filter) {
+        return findFilmsByIds(filmDbStorage.findPopularFilmIds(count, filter));
+    }
+
+    @Override
+    public List<Film> findRecommendedFilms(int userId, int count) {
+        return findFilmsByIds(filmDbStorage.findRecommendedFilmIds(userId, count));
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, int count) {
+        return findFilmsByIds(filmDbStorage.searchFilmIds(query, byTitle, byDescription, count));
+    }
+
+    private Film withCurrentRate(Film film) {
+        // Список жанров копируется, чтобы изменения у вызывающего не попали в закэшированный фильм
+        return film.toBuilder()
+                .rate(popularityIndex.getLikes(film.getId()))
+                .genres(film.getGenres() == null ? null : new ArrayList<>(film.getGenres()))
+                .build();
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.dao.GenreAndMpaStorage;
+import ru.yandex.practicum.filmorate.storage.impl.GenreAndMpaDbStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Справочники жанров и рейтингов MPA, загруженные в память при старте приложения.
+ * Жанры и рейтинги неизменяемы, поэтому все фильмы используют одни и те же экземпляры.
+ * Справочники заполняются повторяемой миграцией до старта приложения, и приложение их не меняет,
+ * поэтому неизвестный идентификатор сразу дает 404 без обращения к базе. После изменения таблиц
+ * genre и rating в обход приложения справочники перечитываются вызовом {@link #reload()}.
+ */
+@Slf4j
+@Primary
+@Component
+public class CachedGenreAndMpaStorage implements GenreAndMpaStorage {
+    private final GenreAndMpaDbStorage genreAndMpaDbStorage;
+
+    private volatile Map<Integer, Genre> genres = Map.of();
+    private volatile Map<Integer, Mpa> mpa = Map.of();
+
+    public CachedGenreAndMpaStorage(GenreAndMpaDbStorage genreAndMpaDbStorage) {
+        this.genreAndMpaDbStorage = genreAndMpaDbStorage;
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        Map<Integer, Genre> loadedGenres = new TreeMap<>();
+        genreAndMpaDbStorage.findAllGenres().forEach(genre -> loadedGenres.put(genre.getId(), genre));
+        Map<Integer, Mpa> loadedMpa = new TreeMap<>();
+        genreAndMpaDbStorage.getAllMpa().forEach(rating -> loadedMpa.put(rating.getId(), rating));
+        genres = Collections.unmodifiableMap(loadedGenres);
+        mpa = Collections.unmodifiableMap(loadedMpa);
+        log.info("Загружены справочники: {} жанров, {} рейтингов", loadedGenres.size(), loadedMpa.size());
+    }
+
+    @Override
+    public Collection<Genre> findAllGenres() {
+        return genres.values();
+    }
+
+    @Override
+    public Optional<Genre> findGenreById(int id) {
+        Genre genre = getGenre(id);
+        if (genre == null) {
+            throw new ObjectNotFoundException("Жанр с идентификатором " + id + " не найден.");
+        }
+        return Optional.of(genre);
+    }
+
+    @Override
+    public Collection<Mpa> getAllMpa() {
+        return mpa.values();
+    }
+
+    @Override
+    public Optional<Mpa> findMpaById(int id) {
+        Mpa rating = getMpa(id);
+        if (rating == null) {
+            throw new ObjectNotFoundException("Рейтинг с идентификатором " + id + " не найден.");
+        }
+        return Optional.of(rating);
+    }
+
+    public Genre getGenre(int id) {
+        return genres.get(id);
+    }
+
+    public Mpa getMpa(int id) {
+        return mpa.get(id);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import java.util.List;
+
+public interface ExportStorage {
+    /**
+     * Таблицы, которые можно выгрузить, в порядке выгрузки по умолчанию.
+     */
+    List<String> getTables();
+
+    /**
+     * Читает таблицы построчно из одного согласованного снимка базы и передает строки обработчику.
+     */
+    void exportSnapshot(List<String> tables, RowHandler handler);
+
+    interface RowHandler {
+        void startTable(String table, List<String> columns);
+
+        void row(Object[] values);
+    }
+}
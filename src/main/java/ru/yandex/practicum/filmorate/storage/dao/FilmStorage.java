@@ -1,15 +1,29 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAllFilms();
 
+    Collection<Film> findFilms(int afterId, int size);
+
+    Collection<Film> findFilms(FilmFilter filter, int afterId, int size);
+
+    void streamAllFilms(Consumer<Film> consumer);
+
     Optional<Film> findFilmById(int id);
 
+    boolean existsById(int id);
+
+    List<Film> findFilmsByIds(int[] ids);
+
     Film createFilm(Film film);
 
     Film updateFilm(Film film);
@@ -18,5 +32,21 @@ public interface FilmStorage {
 
     void removeLike(int filmId, int userId);
 
+    void removeLikesOfUser(int userId);
+
+    boolean hasLike(int filmId, int userId);
+
+    void saveLikes(Collection<Like> added, Collection<Like> removed);
+
+    List<Film> importFilms(List<Film> films);
+
+    int importLikes(List<Like> likes);
+
     Collection<Film> getPopular(int count);
+
+    Collection<Film> getPopular(int count, FilmFilter filter);
+
+    List<Film> findRecommendedFilms(int userId, int count);
+
+    List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, int count);
 }
@@ -1,23 +1,40 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import ru.yandex.practicum.filmorate.model.Friends;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> findAllUsers();
 
+    Collection<User> findUsers(int afterId, int size);
+
+    void streamAllUsers(Consumer<User> consumer);
+
     Collection<User> findUsersFriends(int id);
 
+    List<User> findUsersByIds(int[] ids);
+
     Optional<User> findUserById(int id);
 
+    boolean existsById(int id);
+
     Collection<User> findCommonFriends(int id, int otherId);
 
+    List<User> findRecommendedFriends(int id, int count);
+
     boolean removeUser(int id);
 
     User createUser(User user);
 
+    List<User> importUsers(List<User> users);
+
+    int importFriends(List<Friends> friendships);
+
     User updateUser(User user);
 
     void addFriend(int id, int friendId);
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Собирает пары (ключ, значение) таблицы связей в отсортированные массивы int для индексов в памяти.
+ * Строки должны быть упорядочены по ключу и значению, тогда каждый массив строится за один проход.
+ */
+class AdjacencyExtractor implements ResultSetExtractor<Map<Integer, int[]>> {
+    private final String keyColumn;
+    private final String valueColumn;
+
+    AdjacencyExtractor(String keyColumn, String valueColumn) {
+        this.keyColumn = keyColumn;
+        this.valueColumn = valueColumn;
+    }
+
+    @Override
+    public Map<Integer, int[]> extractData(ResultSet rs) throws SQLException {
+        Map<Integer, int[]> result = new HashMap<>();
+        int[] values = new int[16];
+        int size = 0;
+        int key = 0;
+        while (rs.next()) {
+            if (size > 0 && rs.getInt(keyColumn) != key) {
+                result.put(key, Arrays.copyOf(values, size));
+                size = 0;
+            }
+            key = rs.getInt(keyColumn);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = rs.getInt(valueColumn);
+        }
+        if (size > 0) {
+            result.put(key, Arrays.copyOf(values, size));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Пакетная вставка строк одним JDBC-пакетом с получением сгенерированных ключей.
+ * JdbcTemplate.batchUpdate ключи не возвращает, а SimpleJdbcInsert вставляет строки по одной.
+ */
+final class BatchInsert {
+    private BatchInsert() {
+    }
+
+    interface ParameterSetter<T> {
+        void setValues(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    /**
+     * @return сгенерированные ключи в порядке строк
+     */
+    static <T> int[] insertReturningKeys(JdbcTemplate jdbcTemplate, String sql, String keyColumn,
+                                         List<T> rows, ParameterSetter<T> setter) {
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{keyColumn})) {
+                for (T row : rows) {
+                    setter.setValues(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                int[] keys = new int[rows.size()];
+                int size = 0;
+                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                    while (generatedKeys.next()) {
+                        keys[size++] = generatedKeys.getInt(1);
+                    }
+                }
+                if (size != keys.length) {
+                    throw new SQLException("Получено ключей: " + size + ", вставлено строк: " + keys.length);
+                }
+                return keys;
+            }
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.dao.ExportStorage;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выгрузка таблиц из одного снимка базы. Все таблицы читаются в одной транзакции только для чтения
+ * с уровнем изоляции SNAPSHOT (в H2 снимок всех таблиц берется в начале транзакции, а REPEATABLE READ
+ * фиксирует каждую таблицу только при первом обращении к ней). Благодаря MVCC чтение не блокирует запись.
+ * <p>
+ * Строки читаются курсором порциями по filmorate.jdbc.export-fetch-size строк, в H2 для этого включается
+ * ленивое выполнение запросов, иначе результат целиком собирается до выдачи первой строки.
+ */
+@Slf4j
+@Component
+public class ExportDbStorage implements ExportStorage {
+    // org.h2.engine.Constants.TRANSACTION_SNAPSHOT, в java.sql.Connection такого уровня нет
+    private static final int H2_TRANSACTION_SNAPSHOT = 6;
+
+    // Запросы к выгружаемым таблицам, строки упорядочены по первичному ключу
+    private static final Map<String, String> SQL_FOR_TABLES = new LinkedHashMap<>();
+
+    static {
+        SQL_FOR_TABLES.put("film", "SELECT film_id, name, description, release_date, duration, rate "
+                + "FROM film ORDER BY film_id");
+        SQL_FOR_TABLES.put("film_rating", "SELECT film_id, rating_id FROM film_rating ORDER BY film_id");
+        SQL_FOR_TABLES.put("film_genre", "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id");
+        SQL_FOR_TABLES.put("users", "SELECT user_id, email, login, name, birthday FROM users ORDER BY user_id");
+        SQL_FOR_TABLES.put("film_user", "SELECT film_id, user_id FROM film_user ORDER BY film_id, user_id");
+        SQL_FOR_TABLES.put("user_friend", "SELECT user_id, friend_id FROM user_friend ORDER BY user_id, friend_id");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public ExportDbStorage(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.jdbc.export-fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public List<String> getTables() {
+        return List.copyOf(SQL_FOR_TABLES.keySet());
+    }
+
+    @Override
+    public void exportSnapshot(List<String> tables, RowHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean h2 = "H2".equals(connection.getMetaData().getDatabaseProductName());
+            boolean autoCommit = connection.getAutoCommit();
+            int isolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(h2 ? H2_TRANSACTION_SNAPSHOT : Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            setLazyExecution(connection, h2, true);
+            try {
+                for (String table : tables) {
+                    exportTable(connection, table, handler);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                setLazyExecution(connection, h2, false);
+                connection.setAutoCommit(autoCommit);
+                connection.setReadOnly(false);
+                connection.setTransactionIsolation(isolation);
+            }
+            return null;
+        });
+    }
+
+    private void exportTable(Connection connection, String table, RowHandler handler) throws SQLException {
+        String sql = SQL_FOR_TABLES.get(table);
+        if (sql == null) {
+            throw new IllegalArgumentException("Таблица " + table + " не выгружается");
+        }
+        long rows = 0;
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(fetchSize);
+            try (ResultSet rs = statement.executeQuery(sql)) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i).toLowerCase());
+                }
+                handler.startTable(table, columns);
+                Object[] values = new Object[columns.size()];
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        Object value = rs.getObject(i + 1);
+                        values[i] = value instanceof Date ? ((Date) value).toLocalDate() : value;
+                    }
+                    handler.row(values);
+                    rows++;
+                }
+            }
+        }
+        log.debug("Выгружена таблица {}: {} строк", table, rows);
+    }
+
+    private static void setLazyExecution(Connection connection, boolean h2, boolean lazy) throws SQLException {
+        if (!h2) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+}
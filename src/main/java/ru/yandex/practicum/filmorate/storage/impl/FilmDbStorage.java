@@ -1,102 +1,292 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidateException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.CachedGenreAndMpaStorage;
 import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
 
+import javax.annotation.PostConstruct;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final SimpleJdbcInsert filmInsert;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final PopularityIndex popularityIndex;
+    private final CachedGenreAndMpaStorage genreAndMpaStorage;
+    private final LikesIndex likesIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFacetIndex facetIndex;
+    private final int recommendationNeighbours;
+    private final int recommendationMaxEdges;
 
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                         PopularityIndex popularityIndex, CachedGenreAndMpaStorage genreAndMpaStorage,
+                         LikesIndex likesIndex, FilmSearchIndex searchIndex, FilmFacetIndex facetIndex,
+                         @Value("${filmorate.films.recommendations.neighbours:50}") int recommendationNeighbours,
+                         @Value("${filmorate.films.recommendations.max-edges:1000000}") int recommendationMaxEdges,
+                         @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.popularityIndex = popularityIndex;
+        this.genreAndMpaStorage = genreAndMpaStorage;
+        this.likesIndex = likesIndex;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.recommendationNeighbours = recommendationNeighbours;
+        this.recommendationMaxEdges = recommendationMaxEdges;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(streamFetchSize);
+        // Метаданные таблицы читаются один раз при первой вставке, дальше вставка потокобезопасна
+        this.filmInsert = new SimpleJdbcInsert(jdbcTemplate).withTableName("film").usingGeneratedKeyColumns("film_id");
     }
 
+    // Названия жанров и рейтингов берутся из справочников в памяти, поэтому таблицы genre и rating не соединяются
     private static final String SQL_FOR_FILM_WITH_MPA =
-            "SELECT * FROM film " +
-                    "JOIN (SELECT film_rating.film_id, film_rating.rating_id, rating.name AS rating_name " +
-                    "      FROM film_rating " +
-                    "      JOIN rating ON film_rating.rating_id = rating.rating_id) AS add " +
-                    "ON film.film_id = add.film_id";
+            "SELECT film.*, film_rating.rating_id FROM film " +
+                    "JOIN film_rating ON film.film_id = film_rating.film_id";
+
+    private static final String SQL_FOR_GENRES =
+            "SELECT film_genre.film_id, film_genre.genre_id FROM film_genre";
+
+    private static final String SQL_FOR_INSERT_MISSING_LIKE = "insert into film_user(film_id, user_id) select ?, ? " +
+            "where not exists (select 1 from film_user where film_id = ? and user_id = ?)";
+    private static final ParameterizedPreparedStatementSetter<Like> LIKE_PARAMETERS = (ps, like) -> {
+        ps.setInt(1, like.getFilmId());
+        ps.setInt(2, like.getUserId());
+    };
+    private static final ParameterizedPreparedStatementSetter<Like> MISSING_LIKE_PARAMETERS = (ps, like) -> {
+        LIKE_PARAMETERS.setValues(ps, like);
+        ps.setInt(3, like.getFilmId());
+        ps.setInt(4, like.getUserId());
+    };
+
+    // Максимальное количество идентификаторов в одном IN-списке
+    private static final int IN_LIST_CHUNK_SIZE = 1000;
+
+    @PostConstruct
+    public void loadPopularityIndex() {
+        String sql = "SELECT film.film_id, film.rate FROM film JOIN film_rating ON film.film_id = film_rating.film_id";
+        Map<Integer, Integer> likes = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> likes.put(rs.getInt("film_id"), rs.getInt("rate")));
+        popularityIndex.rebuild(likes);
+        log.info("Индекс популярности построен: {} фильмов", likes.size());
+    }
+
+    @PostConstruct
+    public void loadLikesIndex() {
+        // Строки упорядочены по первичному ключу (film_id, user_id)
+        String sql = "SELECT film_id, user_id FROM film_user ORDER BY film_id, user_id";
+        Map<Integer, int[]> likesByFilm = streamingJdbcTemplate.query(sql, new AdjacencyExtractor("film_id", "user_id"));
+        likesIndex.rebuild(likesByFilm);
+        log.info("Индекс лайков построен: {} фильмов с лайками", likesByFilm.size());
+    }
+
+    @PostConstruct
+    public void loadSearchIndex() {
+        String sql = "SELECT film_id, name, description FROM film";
+        int[] films = {0};
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            searchIndex.index(rs.getInt("film_id"), rs.getString("name"), rs.getString("description"));
+            films[0]++;
+        });
+        log.info("Поисковый индекс построен: {} фильмов", films[0]);
+    }
+
+    @PostConstruct
+    public void loadFacetIndex() {
+        Map<Integer, int[]> genresByFilm = streamingJdbcTemplate.query(
+                "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id",
+                new AdjacencyExtractor("film_id", "genre_id"));
+        String sql = "SELECT film.film_id, film.release_date, film_rating.rating_id FROM film " +
+                "JOIN film_rating ON film.film_id = film_rating.film_id";
+        int[] films = {0};
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            int filmId = rs.getInt("film_id");
+            facetIndex.index(filmId, rs.getInt("rating_id"), genresByFilm.getOrDefault(filmId, new int[0]),
+                    rs.getDate("release_date").toLocalDate().getYear());
+            films[0]++;
+        });
+        log.info("Индекс фильтров построен: {} фильмов", films[0]);
+    }
 
     @Override
     public Optional<Film> findFilmById(int id) {
         // Запрос к базе данных для поиска фильма по идентификатору
         String sqlQuery = SQL_FOR_FILM_WITH_MPA + " WHERE film.film_id = ?";
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet(sqlQuery, id);
-
-        if (filmRows.next()) {
-            // Извлечение данных из результатов запроса
-            int filmId = filmRows.getInt("film_id");
-            String name = filmRows.getString("name");
-            String description = filmRows.getString("description");
-            LocalDate releaseDate = filmRows.getDate("release_date").toLocalDate();
-            int duration = filmRows.getInt("duration");
-            int ratingId = filmRows.getInt("rating_id");
-            String ratingName = filmRows.getString("rating_name");
-            // Создание объекта Film с полученными данными
-            Film film = new Film(filmId, name, description, releaseDate, duration, getRate(id), new Mpa(ratingId, ratingName), getGenres(id));
+        List<Film> films = assembleFilms(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), id));
+
+        if (!films.isEmpty()) {
+            Film film = films.get(0);
             // Вывод информации в лог о найденном фильме
-            log.info("Найден фильм: {} {}", film.getId(), film.getName());
+            log.debug("Найден фильм: {} {}", film.getId(), film.getName());
             return Optional.of(film);
         } else {
             // Вывод информации в лог, если фильм не найден
-            log.info("Фильм с идентификатором {} не найден.", id);
+            log.debug("Фильм с идентификатором {} не найден.", id);
             throw new ObjectNotFoundException("Фильм с идентификатором " + id + " не найден.");
         }
     }
 
+    @Override
+    public boolean existsById(int id) {
+        String sql = "select exists(select 1 from film where film_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    /**
+     * Загружает фильмы по списку идентификаторов и возвращает их в том же порядке.
+     * Отсутствующие в базе идентификаторы пропускаются.
+     */
+    @Override
+    public List<Film> findFilmsByIds(int[] ids) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += IN_LIST_CHUNK_SIZE) {
+            List<Integer> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + IN_LIST_CHUNK_SIZE, ids.length); i++) {
+                chunk.add(ids[i]);
+            }
+            String sql = SQL_FOR_FILM_WITH_MPA + " WHERE film.film_id IN (:ids)";
+            namedJdbcTemplate.query(sql, new MapSqlParameterSource("ids", chunk), (RowCallbackHandler) rs -> {
+                Film film = makeFilm(rs);
+                filmsById.put(film.getId(), film);
+            });
+        }
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (int id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return assembleFilms(films);
+    }
+
     @Override
     public Collection<Film> findAllFilms() {
-        return jdbcTemplate.query(SQL_FOR_FILM_WITH_MPA, (rs, rowNum) -> makeFilm(rs));
+        // Фильмы и жанры загружаются двумя запросами по всей таблице,
+        // а не отдельными запросами для каждого фильма
+        List<Film> films = jdbcTemplate.query(SQL_FOR_FILM_WITH_MPA + " ORDER BY film.film_id", (rs, rowNum) -> makeFilm(rs));
+        Map<Integer, Film> filmsById = mapById(films);
+        jdbcTemplate.query(SQL_FOR_GENRES + " ORDER BY film_genre.film_id, film_genre.genre_id",
+                (RowCallbackHandler) rs -> addGenre(filmsById, rs));
+        return films;
+    }
+
+    @Override
+    public Collection<Film> findFilms(int afterId, int size) {
+        String sql = SQL_FOR_FILM_WITH_MPA + " WHERE film.film_id > ? ORDER BY film.film_id LIMIT ?";
+        return assembleFilms(jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), afterId, size));
     }
 
     @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        // Фильмы читаются порциями по ключу, и каждая порция дополняется жанрами. Соединение занято только
+        // на время одного запроса, поэтому поток не ждет второе соединение, удерживая первое
+        int chunkSize = streamingJdbcTemplate.getFetchSize();
+        int lastId = 0;
+        Collection<Film> chunk;
+        do {
+            chunk = findFilms(lastId, chunkSize);
+            for (Film film : chunk) {
+                consumer.accept(film);
+                lastId = film.getId();
+            }
+        } while (chunk.size() == chunkSize);
+    }
+
+    /**
+     * Добавляет новые фильмы в индексы после фиксации транзакции.
+     */
+    private void indexFilms(List<Film> films) {
+        AfterCommit.run(() -> {
+            for (Film film : films) {
+                if (film.getMpa() != null) {
+                    popularityIndex.addFilm(film.getId());
+                }
+                searchIndex.index(film.getId(), film.getName(), film.getDescription());
+                indexFacets(film);
+            }
+        });
+    }
+
+    private void indexFacets(Film film) {
+        if (film.getMpa() == null) {
+            return;
+        }
+        int[] genreIds = film.getGenres() == null ? new int[0]
+                : film.getGenres().stream().mapToInt(Genre::getId).toArray();
+        facetIndex.index(film.getId(), film.getMpa().getId(), genreIds, film.getReleaseDate().getYear());
+    }
+
+    /**
+     * Все вставки выполняются в одной транзакции на одном соединении, индексы в памяти
+     * обновляются только после ее фиксации, поэтому ошибка в жанрах не оставляет фильм без рейтинга и жанров.
+     */
+    @Override
+    @Transactional
     public Film createFilm(Film film) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate).withTableName("film").usingGeneratedKeyColumns("film_id");
-        film.setId(simpleJdbcInsert.executeAndReturnKey(film.toMap()).intValue());
+        // Счетчик лайков нового фильма всегда начинается с нуля и меняется только в addLike/removeLike
+        film.setRate(0);
+        film.setId(filmInsert.executeAndReturnKey(film.toMap()).intValue());
 
         if (film.getMpa() != null) {
             String sqlQuery = "insert into film_rating(film_id, rating_id) values (?, ?)";
             jdbcTemplate.update(sqlQuery, film.getId(), film.getMpa().getId());
         }
-
         if (film.getGenres() != null) {
             batchUpdateGenres(film);
         }
 
+        if (film.getMpa() != null) {
+            film.setMpa(genreAndMpaStorage.getMpa(film.getMpa().getId()));
+        }
+        if (film.getGenres() != null) {
+            // В ответе жанры те же, что вернет чтение фильма: без повторов, по возрастанию id
+            List<Genre> genres = new ArrayList<>();
+            getUniqueGenres(film.getGenres()).forEach(genreId -> genres.add(genreAndMpaStorage.getGenre(genreId)));
+            film.setGenres(genres);
+        }
+
+        indexFilms(List.of(film));
         return film;
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
         String sql = "update film set name = ?, description = ?, release_date = ?, duration = ? where film_id = ?";
         jdbcTemplate.update(sql, film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getId());
 
-        if (film.getRate() != 0) {
-            String sqlRate = "update film set rate = ? where film_id = ?";
-            jdbcTemplate.update(sqlRate, film.getRate(), film.getId());
-        } else {
-            String sqlRate = "update film set rate = ? where film_id = ?";
-            jdbcTemplate.update(sqlRate, getRate(film.getId()), film.getId());
-        }
-
         if (film.getMpa() != null) {
             String sqlMpa = "update film_rating set rating_id = ? where film_id = ?";
             jdbcTemplate.update(sqlMpa, film.getMpa().getId(), film.getId());
@@ -106,41 +296,208 @@ public class FilmDbStorage implements FilmStorage {
             updateGenres(film);
         }
 
-        log.info("Фильм с id: {} обновлен", film.getId());
-        return findFilmById(film.getId()).get();
+        log.debug("Фильм с id: {} обновлен", film.getId());
+        Film updated = findFilmById(film.getId()).get();
+        AfterCommit.run(() -> {
+            searchIndex.index(updated.getId(), updated.getName(), updated.getDescription());
+            indexFacets(updated);
+        });
+        return updated;
     }
 
     @Override
+    @Transactional
     public void addLike(int filmId, int userId) {
-        SqlRowSet checkRows = jdbcTemplate.queryForRowSet("select * from film_user where film_id = ? and user_id = ?", filmId, userId);
-        if (checkRows.next()) {
+        // Повторный лайк отклоняет уникальное ограничение (film_id, user_id), а счетчик
+        // увеличивается в той же транзакции, поэтому параллельные лайки не теряются
+        try {
+            jdbcTemplate.update("insert into film_user(film_id, user_id) values (?, ?)", filmId, userId);
+        } catch (DuplicateKeyException e) {
             throw new ValidateException("Вы уже поставили лайк этому фильму");
-        } else {
-            String sqlQuery = "insert into film_user(film_id, user_id) values (?, ?)";
-            jdbcTemplate.update(sqlQuery, filmId, userId);
-            updateFilmRate(filmId);
-            log.info("Пользователь с id: {} поставил лайк фильму с id: {}", userId, filmId);
         }
+        jdbcTemplate.update("update film set rate = rate + 1 where film_id = ?", filmId);
+        AfterCommit.run(() -> {
+            popularityIndex.changeLikes(filmId, 1);
+            likesIndex.addLike(filmId, userId);
+        });
+        log.debug("Пользователь с id: {} поставил лайк фильму с id: {}", userId, filmId);
     }
 
     @Override
+    @Transactional
     public void removeLike(int filmId, int userId) {
-        SqlRowSet checkRows = jdbcTemplate.queryForRowSet("select * from film_user where film_id = ? and user_id = ?", filmId, userId);
-        log.info("Проверка поставленных лайков пользователя с id: {} фильму с id {}", userId, filmId);
-        if (checkRows.next()) {
-            String sql = "delete from film_user where film_id = ? and user_id = ?";
-            jdbcTemplate.update(sql, filmId, userId);
-            updateFilmRate(filmId);
-            log.info("Пользователь с id: {} удалил лайк фильму с id: {}", userId, filmId);
-        } else {
+        int deleted = jdbcTemplate.update(IndexedQueries.DELETE_LIKE, filmId, userId);
+        if (deleted == 0) {
             throw new ValidateException("Вы не ставили лайк этому фильму");
         }
+        jdbcTemplate.update("update film set rate = rate - 1 where film_id = ?", filmId);
+        AfterCommit.run(() -> {
+            popularityIndex.changeLikes(filmId, -1);
+            likesIndex.removeLike(filmId, userId);
+        });
+        log.debug("Пользователь с id: {} удалил лайк фильму с id: {}", userId, filmId);
+    }
+
+    @Override
+    @Transactional
+    public void removeLikesOfUser(int userId) {
+        List<Integer> filmIds = jdbcTemplate.queryForList(IndexedQueries.LIKED_FILMS, Integer.class, userId);
+        jdbcTemplate.update("update film set rate = rate - 1 where film_id in (" + IndexedQueries.LIKED_FILMS + ")", userId);
+        jdbcTemplate.update("delete from film_user where user_id = ?", userId);
+        AfterCommit.run(() -> {
+            filmIds.forEach(filmId -> popularityIndex.changeLikes(filmId, -1));
+            likesIndex.removeUser(userId);
+        });
+        log.debug("Удалены лайки пользователя с id: {}", userId);
+    }
+
+    @Override
+    public boolean hasLike(int filmId, int userId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IndexedQueries.LIKE, Boolean.class, filmId, userId));
+    }
+
+    /**
+     * Сохраняет накопленные лайки пакетами в одной транзакции. В отличие от addLike/removeLike
+     * индекс популярности не меняется: его обновляет тот, кто накопил лайки.
+     */
+    @Override
+    @Transactional
+    public void saveLikes(Collection<Like> added, Collection<Like> removed) {
+        Map<Integer, Integer> rateChanges = new HashMap<>();
+        applyLikes(SQL_FOR_INSERT_MISSING_LIKE, MISSING_LIKE_PARAMETERS, added, 1, rateChanges);
+        applyLikes(IndexedQueries.DELETE_LIKE, LIKE_PARAMETERS, removed, -1, rateChanges);
+        updateRates(rateChanges);
+        log.debug("Сохранено лайков: {}, удалено лайков: {}", added.size(), removed.size());
+    }
+
+    /**
+     * Импортирует лайки пакетом в одной транзакции. Уже существующие лайки пропускаются.
+     */
+    @Override
+    @Transactional
+    public int importLikes(List<Like> likes) {
+        Map<Integer, Integer> rateChanges = new HashMap<>();
+        List<Like> inserted = applyLikes(SQL_FOR_INSERT_MISSING_LIKE, MISSING_LIKE_PARAMETERS, likes, 1, rateChanges);
+        updateRates(rateChanges);
+        AfterCommit.run(() -> {
+            rateChanges.forEach(popularityIndex::changeLikes);
+            inserted.forEach(like -> likesIndex.addLike(like.getFilmId(), like.getUserId()));
+        });
+        return inserted.size();
+    }
+
+    /**
+     * Импортирует фильмы тремя JDBC-пакетами в одной транзакции: фильмы, рейтинги и жанры.
+     */
+    @Override
+    @Transactional
+    public List<Film> importFilms(List<Film> films) {
+        int[] ids = BatchInsert.insertReturningKeys(jdbcTemplate,
+                "insert into film(name, description, release_date, duration, rate) values (?, ?, ?, ?, 0)",
+                "film_id", films, (ps, film) -> {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setObject(3, film.getReleaseDate());
+                    ps.setInt(4, film.getDuration());
+                });
+        List<Object[]> ratings = new ArrayList<>();
+        List<Object[]> genres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(ids[i]);
+            film.setRate(0);
+            if (film.getMpa() != null) {
+                ratings.add(new Object[]{film.getId(), film.getMpa().getId()});
+            }
+            if (film.getGenres() != null) {
+                for (int genreId : getUniqueGenres(film.getGenres())) {
+                    genres.add(new Object[]{film.getId(), genreId});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into film_rating(film_id, rating_id) values (?, ?)", ratings);
+        jdbcTemplate.batchUpdate("insert into film_genre(film_id, genre_id) values (?, ?)", genres);
+
+        for (Film film : films) {
+            if (film.getMpa() != null) {
+                film.setMpa(genreAndMpaStorage.getMpa(film.getMpa().getId()));
+            }
+            if (film.getGenres() != null) {
+                List<Genre> uniqueGenres = new ArrayList<>();
+                getUniqueGenres(film.getGenres()).forEach(genreId -> uniqueGenres.add(genreAndMpaStorage.getGenre(genreId)));
+                film.setGenres(uniqueGenres);
+            }
+        }
+        indexFilms(films);
+        return films;
     }
 
     @Override
     public Collection<Film> getPopular(int count) {
-        String sql = SQL_FOR_FILM_WITH_MPA + " order by rate limit ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeFilm(rs), count);
+        // Порядок фильмов берется из индекса популярности, из базы загружаются только сами фильмы
+        return findFilmsByIds(popularityIndex.findTopFilmIds(count));
+    }
+
+    @Override
+    public List<Film> findRecommendedFilms(int userId, int count) {
+        return findFilmsByIds(findRecommendedFilmIds(userId, count));
+    }
+
+    @Override
+    public Collection<Film> findFilms(FilmFilter filter, int afterId, int size) {
+        return findFilmsByIds(findFilmIds(filter, afterId, size));
+    }
+
+    /**
+     * Отбирает фильмы по индексу фильтров по возрастанию id, начиная после afterId.
+     */
+    public int[] findFilmIds(FilmFilter filter, int afterId, int size) {
+        if (afterId == Integer.MAX_VALUE) {
+            return new int[0];
+        }
+        BitSet films = facetIndex.filter(filter);
+        int minLikes = filter.getMinLikes() == null ? 0 : filter.getMinLikes();
+        int[] ids = new int[Math.min(size, films.cardinality())];
+        int count = 0;
+        for (int filmId = films.nextSetBit(Math.max(afterId + 1, 0)); filmId >= 0 && count < ids.length;
+             filmId = films.nextSetBit(filmId + 1)) {
+            if (popularityIndex.getLikes(filmId) >= minLikes) {
+                ids[count++] = filmId;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    @Override
+    public Collection<Film> getPopular(int count, FilmFilter filter) {
+        return findFilmsByIds(findPopularFilmIds(count, filter));
+    }
+
+    /**
+     * Пересекает индекс фильтров с рейтингом популярности.
+     */
+    public int[] findPopularFilmIds(int count, FilmFilter filter) {
+        BitSet films = filter.hasFacets() ? facetIndex.filter(filter) : null;
+        return popularityIndex.findTopFilmIds(count, films, filter.getMinLikes() == null ? 0 : filter.getMinLikes());
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, boolean byTitle, boolean byDescription, int count) {
+        return findFilmsByIds(searchFilmIds(query, byTitle, byDescription, count));
+    }
+
+    /**
+     * Ищет фильмы по поисковому индексу без обращения к базе данных.
+     */
+    public int[] searchFilmIds(String query, boolean byTitle, boolean byDescription, int count) {
+        return searchIndex.search(query, byTitle, byDescription, count, popularityIndex::getLikes);
+    }
+
+    /**
+     * Подбирает фильмы по индексу лайков без обращения к базе данных.
+     */
+    public int[] findRecommendedFilmIds(int userId, int count) {
+        return likesIndex.findRecommendedFilms(userId, count, recommendationNeighbours, recommendationMaxEdges);
     }
 
     private Film makeFilm(ResultSet rs) throws SQLException {
@@ -149,24 +506,82 @@ public class FilmDbStorage implements FilmStorage {
         String description = rs.getString("description");
         LocalDate releaseDate = rs.getDate("release_date").toLocalDate();
         int duration = rs.getInt("duration");
-        int rate = getRate(id);
-        int ratingId = rs.getInt("rating_id");
-        String ratingName = rs.getString("rating_name");
-        return new Film(id, name, description, releaseDate, duration, rate, new Mpa(ratingId, ratingName), getGenres(id));
+        // Индекс популярности учитывает лайки, которые еще не записаны в базу
+        int rate = popularityIndex.contains(id) ? popularityIndex.getLikes(id) : rs.getInt("rate");
+        Mpa mpa = genreAndMpaStorage.getMpa(rs.getInt("rating_id"));
+        return new Film(id, name, description, releaseDate, duration, rate, mpa, new ArrayList<>());
+    }
+
+    /**
+     * Дополняет фильмы жанрами. Вместо запроса на каждый фильм выполняется
+     * один запрос с IN-списком на каждые {@link #IN_LIST_CHUNK_SIZE} фильмов.
+     */
+    private List<Film> assembleFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, Film> filmsById = mapById(films);
+        List<Integer> ids = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids",
+                    ids.subList(from, Math.min(from + IN_LIST_CHUNK_SIZE, ids.size())));
+            namedJdbcTemplate.query(IndexedQueries.GENRES_OF_FILMS, params, (RowCallbackHandler) rs -> addGenre(filmsById, rs));
+        }
+        return films;
+    }
+
+    private Map<Integer, Film> mapById(List<Film> films) {
+        Map<Integer, Film> filmsById = new LinkedHashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        return filmsById;
     }
 
-    private Collection<Genre> getGenres(int filmId) {
-        String sql = "select * from film_genre join genre on film_genre.genre_id = genre.genre_id where film_id = ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> new Genre(rs.getInt("genre_id"), rs.getString("name")), filmId);
+    private void addGenre(Map<Integer, Film> filmsById, ResultSet rs) throws SQLException {
+        Film film = filmsById.get(rs.getInt("film_id"));
+        if (film != null) {
+            film.getGenres().add(genreAndMpaStorage.getGenre(rs.getInt("genre_id")));
+        }
     }
 
-    private int getRate(int filmId) {
-        int rate = 0;
-        SqlRowSet rateRows = jdbcTemplate.queryForRowSet("select count(user_id) as count from film_user where film_id = ?", filmId);
-        if (rateRows.next()) {
-            rate = rateRows.getInt("count");
+    /**
+     * @return лайки, которые действительно были вставлены или удалены
+     */
+    private List<Like> applyLikes(String sql, ParameterizedPreparedStatementSetter<Like> parameters,
+                                  Collection<Like> likes, int sign, Map<Integer, Integer> rateChanges) {
+        if (likes.isEmpty()) {
+            return List.of();
         }
-        return rate;
+        List<Like> batch = new ArrayList<>(likes);
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                parameters.setValues(ps, batch.get(i));
+            }
+
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        // Счетчик меняется только для строк, которые действительно были вставлены или удалены
+        List<Like> applied = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                rateChanges.merge(batch.get(i).getFilmId(), sign * updateCounts[i], Integer::sum);
+                applied.add(batch.get(i));
+            }
+        }
+        return applied;
+    }
+
+    private void updateRates(Map<Integer, Integer> rateChanges) {
+        List<Object[]> rates = new ArrayList<>();
+        rateChanges.forEach((filmId, change) -> {
+            if (change != 0) {
+                rates.add(new Object[]{change, filmId});
+            }
+        });
+        jdbcTemplate.batchUpdate("update film set rate = rate + ? where film_id = ?", rates);
     }
 
     private void batchUpdateGenres(Film film) {
@@ -191,15 +606,10 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     private List<Integer> getUniqueGenres(Collection<Genre> genres) {
-        Set<Integer> uniqueGenresIds = new HashSet<>();
+        Set<Integer> uniqueGenresIds = new TreeSet<>();
         for (Genre genre : genres) {
             uniqueGenresIds.add(genre.getId());
         }
         return new ArrayList<>(uniqueGenresIds);
     }
-
-    private void updateFilmRate(int filmId) {
-        String sqlRating = "update film set rate = ? where film_id = ?";
-        jdbcTemplate.update(sqlRating, getRate(filmId), filmId);
-    }
 }
\ No newline at end of file
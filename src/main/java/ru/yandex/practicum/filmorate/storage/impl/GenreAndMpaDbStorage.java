@@ -34,10 +34,10 @@ public class GenreAndMpaDbStorage implements GenreAndMpaStorage {
             Genre genre = new Genre(genreRows.getInt("genre_id"),
                     genreRows.getString("name")
             );
-            log.info("Найден жанр: {} {}", genre.getId(), genre.getName());
+            log.debug("Найден жанр: {} {}", genre.getId(), genre.getName());
             return Optional.of(genre);
         } else {
-            log.info("Жанр с идентификатором {} не найден.", id);
+            log.debug("Жанр с идентификатором {} не найден.", id);
             throw new ObjectNotFoundException("Жанр с идентификатором " + id + " не найден.");
         }
     }
@@ -55,10 +55,10 @@ public class GenreAndMpaDbStorage implements GenreAndMpaStorage {
             Mpa mpa = new Mpa(ratingRows.getInt("rating_id"),
                     ratingRows.getString("name")
             );
-            log.info("Найден рейтинг: {} {}", mpa.getId(), mpa.getName());
+            log.debug("Найден рейтинг: {} {}", mpa.getId(), mpa.getName());
             return Optional.of(mpa);
         } else {
-            log.info("Рейтинг с идентификатором {} не найден.", id);
+            log.debug("Рейтинг с идентификатором {} не найден.", id);
             throw new ObjectNotFoundException("Рейтинг с идентификатором " + id + " не найден.");
         }
     }
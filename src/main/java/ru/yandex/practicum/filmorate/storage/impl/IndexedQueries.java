@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+/**
+ * Запросы хранилищ, которые должны попадать в первичные ключи users, film_genre, film_user и user_friend
+ * и в обратный индекс film_user_user_id_idx, а не обходить таблицу целиком.
+ * Планы их выполнения проверяются в DbStorageExplainTests.
+ */
+public final class IndexedQueries {
+    public static final String GENRES_OF_FILMS = "SELECT film_genre.film_id, film_genre.genre_id FROM film_genre " +
+            "WHERE film_genre.film_id IN (:ids) ORDER BY film_genre.film_id, film_genre.genre_id";
+    public static final String LIKE = "select exists(select 1 from film_user where film_id = ? and user_id = ?)";
+    public static final String DELETE_LIKE = "delete from film_user where film_id = ? and user_id = ?";
+    public static final String LIKED_FILMS = "select film_id from film_user where user_id = ?";
+    public static final String USERS_BY_IDS = "SELECT * FROM users WHERE user_id IN (:ids)";
+    public static final String DELETE_FRIENDSHIP = "DELETE FROM user_friend WHERE user_id = ? AND friend_id = ?";
+
+    private IndexedQueries() {
+    }
+}
@@ -1,28 +1,71 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.Friends;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.dao.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraph;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
 public class UserDbStorage implements UserStorage {
 
+    // Максимальное количество идентификаторов в одном IN-списке
+    private static final int IN_LIST_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final SimpleJdbcInsert userInsert;
+    private final FriendGraph friendGraph;
+    private final int recommendationMaxEdges;
 
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate,
+                         NamedParameterJdbcTemplate namedJdbcTemplate,
+                         FriendGraph friendGraph,
+                         @Value("${filmorate.friends.recommendations.max-edges:100000}") int recommendationMaxEdges,
+                         @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.friendGraph = friendGraph;
+        this.recommendationMaxEdges = recommendationMaxEdges;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(streamFetchSize);
+        // Метаданные таблицы читаются один раз при первой вставке, дальше вставка потокобезопасна
+        this.userInsert = new SimpleJdbcInsert(jdbcTemplate).withTableName("users").usingGeneratedKeyColumns("user_id");
+    }
+
+    @PostConstruct
+    public void loadFriendGraph() {
+        // Строки упорядочены по первичному ключу, поэтому друзья каждого пользователя
+        // собираются в отсортированный массив за один проход
+        String sql = "SELECT user_id, friend_id FROM user_friend ORDER BY user_id, friend_id";
+        Map<Integer, int[]> adjacency = streamingJdbcTemplate.query(sql, new AdjacencyExtractor("user_id", "friend_id"));
+        friendGraph.rebuild(adjacency);
+        log.info("Граф дружбы построен: {} пользователей с друзьями", adjacency.size());
     }
 
     @Override
@@ -31,10 +74,48 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs));
     }
 
+    @Override
+    public Collection<User> findUsers(int afterId, int size) {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), afterId, size);
+    }
+
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        String sql = "SELECT * FROM users ORDER BY user_id";
+        streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(makeUser(rs)));
+    }
+
     @Override
     public Collection<User> findUsersFriends(int id) {
-        String sql = "SELECT * FROM users WHERE user_id IN (SELECT friend_id FROM user_friend WHERE user_id = ?)";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), id);
+        return findUsersByIds(friendGraph.getFriends(id));
+    }
+
+    /**
+     * Загружает пользователей по списку идентификаторов и возвращает их в том же порядке.
+     * Отсутствующие в базе идентификаторы пропускаются.
+     */
+    @Override
+    public List<User> findUsersByIds(int[] ids) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += IN_LIST_CHUNK_SIZE) {
+            List<Integer> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + IN_LIST_CHUNK_SIZE, ids.length); i++) {
+                chunk.add(ids[i]);
+            }
+            namedJdbcTemplate.query(IndexedQueries.USERS_BY_IDS, new MapSqlParameterSource("ids", chunk), (RowCallbackHandler) rs -> {
+                User user = makeUser(rs);
+                usersById.put(user.getId(), user);
+            });
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (int id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
     }
 
     @Override
@@ -43,36 +124,89 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(query, new Object[]{id}, resultSet -> {
             if (resultSet.next()) {
                 User user = makeUser(resultSet);
-                log.info("Найден пользователь: {} {}", user.getId(), user.getLogin());
+                log.debug("Найден пользователь: {} {}", user.getId(), user.getLogin());
                 return Optional.of(user);
             } else {
-                log.info("Пользователь с идентификатором {} не найден.", id);
+                log.debug("Пользователь с идентификатором {} не найден.", id);
                 throw new ObjectNotFoundException("Пользователь с идентификатором " + id + " не найден.");
             }
         });
     }
 
+    @Override
+    public boolean existsById(int id) {
+        String sql = "select exists(select 1 from users where user_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
     @Override
     public Collection<User> findCommonFriends(int id, int otherId) {
-        String sql = "select * from users where user_id in (select friend_id from user_friend where user_id = ? and friend_id in (select friend_id from user_friend where user_id = ?))";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> makeUser(rs), id, otherId);
+        return findUsersByIds(friendGraph.findCommonFriends(id, otherId));
+    }
+
+    @Override
+    public List<User> findRecommendedFriends(int id, int count) {
+        return findUsersByIds(friendGraph.findRecommendedFriends(id, count, recommendationMaxEdges));
     }
 
     @Override
     public boolean removeUser(int id) {
         String sql = "delete from users WHERE user_id = ? ";
-        log.info("Пользователь с id: {} удален", id);
-        return jdbcTemplate.update(sql, id) > 0;
+        boolean deleted = jdbcTemplate.update(sql, id) > 0;
+        // Дружбы пользователя удалены в базе каскадно
+        AfterCommit.run(() -> friendGraph.removeUser(id));
+        log.debug("Пользователь с id: {} удален", id);
+        return deleted;
+    }
+
+    /**
+     * Импортирует пользователей одним JDBC-пакетом в одной транзакции.
+     */
+    @Override
+    @Transactional
+    public List<User> importUsers(List<User> users) {
+        int[] ids = BatchInsert.insertReturningKeys(jdbcTemplate,
+                "insert into users(email, login, name, birthday) values (?, ?, ?, ?)",
+                "user_id", users, (ps, user) -> {
+                    ps.setString(1, user.getEmail());
+                    ps.setString(2, user.getLogin());
+                    ps.setString(3, user.getName());
+                    ps.setObject(4, user.getBirthday());
+                });
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(ids[i]);
+        }
+        return users;
+    }
+
+    /**
+     * Импортирует запросы в друзья пакетом в одной транзакции. Уже существующие запросы пропускаются.
+     */
+    @Override
+    @Transactional
+    public int importFriends(List<Friends> friendships) {
+        String sql = "insert into user_friend(user_id, friend_id) select ?, ? " +
+                "where not exists (select 1 from user_friend where user_id = ? and friend_id = ?)";
+        List<Object[]> rows = new ArrayList<>();
+        for (Friends friends : friendships) {
+            rows.add(new Object[]{friends.getUserId(), friends.getFriendId(), friends.getUserId(), friends.getFriendId()});
+        }
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, rows);
+        List<Friends> inserted = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                inserted.add(friendships.get(i));
+            }
+        }
+        AfterCommit.run(() -> inserted.forEach(friends -> friendGraph.addFriend(friends.getUserId(), friends.getFriendId())));
+        return inserted.size();
     }
 
     @Override
     public User createUser(User user) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("users")
-                .usingGeneratedKeyColumns("user_id");
-        Number userId = simpleJdbcInsert.executeAndReturnKey(user.toMap());
+        Number userId = userInsert.executeAndReturnKey(user.toMap());
         user.setId(userId.intValue());
-        log.info("Создан пользователь: {} {}", user.getId(), user.getLogin());
+        log.debug("Создан пользователь: {} {}", user.getId(), user.getLogin());
         return user;
     }
 
@@ -85,43 +219,40 @@ public class UserDbStorage implements UserStorage {
                 user.getName(),
                 user.getBirthday(),
                 user.getId());
-        log.info("Пользователь с id: {} обновлен", user.getId());
+        log.debug("Пользователь с id: {} обновлен", user.getId());
         return user;
     }
 
     @Override
     public void addFriend(int id, int friendId) {
-        String sqlCheck = "SELECT COUNT(*) FROM user_friend WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
-        int friendCount = jdbcTemplate.queryForObject(sqlCheck, Integer.class, id, friendId, friendId, id);
-        if (friendCount == 0) {
-            String sql = "INSERT INTO user_friend (user_id, friend_id) VALUES (?, ?)";
-            jdbcTemplate.update(sql, id, friendId);
-            log.info("Пользователь с id: {} добавил в друзья пользователя с id: {}", id, friendId);
-        } else if (friendCount == 2) {
-            throw new ValidateException("Вы уже являетесь друзьями");
-        } else {
-            String sql = "SELECT user_id FROM user_friend WHERE user_id = ? AND friend_id = ?";
-            Integer existingUserId = jdbcTemplate.queryForObject(sql, Integer.class, id, friendId);
-            if (existingUserId != null) {
-                throw new ValidateException("Вы уже отправили запрос этому пользователю");
-            } else {
-                jdbcTemplate.update("INSERT INTO user_friend (user_id, friend_id) VALUES (?, ?)", id, friendId);
-                log.info("Пользователь с id: {} добавил в друзья пользователя с id: {}", id, friendId);
-            }
+        if (friendGraph.isFriend(id, friendId)) {
+            throw new ValidateException(friendGraph.isFriend(friendId, id)
+                    ? "Вы уже являетесь друзьями" : "Вы уже отправили запрос этому пользователю");
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO user_friend (user_id, friend_id) VALUES (?, ?)", id, friendId);
+        } catch (DuplicateKeyException e) {
+            throw new ValidateException("Вы уже отправили запрос этому пользователю");
         }
+        AfterCommit.run(() -> friendGraph.addFriend(id, friendId));
+        log.debug("Пользователь с id: {} добавил в друзья пользователя с id: {}", id, friendId);
     }
 
     @Override
+    @Transactional
     public void removeFriend(int id, int friendId) {
-        String sqlCheck = "SELECT COUNT(*) FROM user_friend WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
-        int friendCount = jdbcTemplate.queryForObject(sqlCheck, Integer.class, id, friendId, friendId, id);
-        if (friendCount == 0) {
+        int deleted = jdbcTemplate.update(IndexedQueries.DELETE_FRIENDSHIP, id, friendId);
+        if (id != friendId) {
+            deleted += jdbcTemplate.update(IndexedQueries.DELETE_FRIENDSHIP, friendId, id);
+        }
+        if (deleted == 0) {
             throw new ValidateException("Вы не отправляли пользователю запрос на дружбу");
-        } else {
-            String sql = "DELETE FROM user_friend WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
-            jdbcTemplate.update(sql, id, friendId, friendId, id);
-            log.info("Запрос на дружбу пользователя с id: {} к пользователю с id: {} удален", id, friendId);
         }
+        AfterCommit.run(() -> {
+            friendGraph.removeFriend(id, friendId);
+            friendGraph.removeFriend(friendId, id);
+        });
+        log.debug("Запрос на дружбу пользователя с id: {} к пользователю с id: {} удален", id, friendId);
     }
 
     private User makeUser(ResultSet rs) throws SQLException {
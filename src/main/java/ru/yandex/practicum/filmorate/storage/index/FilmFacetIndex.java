@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Списки фильмов по жанру, рейтингу MPA и году выпуска в виде битовых множеств id.
+ * Фильтр по нескольким признакам - это пересечение множеств, которое занимает
+ * доли миллисекунды даже для всего каталога.
+ */
+@Component
+public class FilmFacetIndex {
+    private final BitSet allFilms = new BitSet();
+    private final Map<Integer, BitSet> filmsByGenre = new HashMap<>();
+    private final Map<Integer, BitSet> filmsByMpa = new HashMap<>();
+    private final NavigableMap<Integer, BitSet> filmsByYear = new TreeMap<>();
+    // Признаки, под которыми фильм проиндексирован сейчас, - чтобы убрать их при обновлении фильма
+    private final Map<Integer, Facets> facetsByFilm = new HashMap<>();
+    // Битовые множества не потокобезопасны, изменения редки по сравнению с чтением
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Индексирует фильм или заменяет его прежние признаки.
+     *
+     * @param mpaId 0, если рейтинг не указан
+     */
+    public void index(int filmId, int mpaId, int[] genreIds, int year) {
+        Facets facets = new Facets(mpaId, genreIds, year);
+        lock.writeLock().lock();
+        try {
+            Facets previous = facetsByFilm.put(filmId, facets);
+            if (previous != null) {
+                update(filmId, previous, false);
+            }
+            update(filmId, facets, true);
+            allFilms.set(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает множество id фильмов, подходящих под жанр, рейтинг и годы фильтра.
+     * Количество лайков здесь не проверяется.
+     */
+    public BitSet filter(FilmFilter filter) {
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) allFilms.clone();
+            if (filter.getGenreId() != null) {
+                result.and(filmsByGenre.getOrDefault(filter.getGenreId(), new BitSet()));
+            }
+            if (filter.getMpaId() != null) {
+                result.and(filmsByMpa.getOrDefault(filter.getMpaId(), new BitSet()));
+            }
+            if (filter.getYearFrom() != null || filter.getYearTo() != null) {
+                int from = filter.getYearFrom() == null ? Integer.MIN_VALUE : filter.getYearFrom();
+                int to = filter.getYearTo() == null ? Integer.MAX_VALUE : filter.getYearTo();
+                BitSet years = new BitSet();
+                filmsByYear.subMap(from, true, to, true).values().forEach(years::or);
+                result.and(years);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(int filmId, Facets facets, boolean value) {
+        if (facets.mpaId != 0) {
+            set(filmsByMpa, facets.mpaId, filmId, value);
+        }
+        for (int genreId : facets.genreIds) {
+            set(filmsByGenre, genreId, filmId, value);
+        }
+        set(filmsByYear, facets.year, filmId, value);
+    }
+
+    private static void set(Map<Integer, BitSet> index, int key, int filmId, boolean value) {
+        if (value) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(filmId);
+        } else {
+            index.computeIfPresent(key, (k, films) -> {
+                films.clear(filmId);
+                return films.isEmpty() ? null : films;
+            });
+        }
+    }
+
+    private static final class Facets {
+        private final int mpaId;
+        private final int[] genreIds;
+        private final int year;
+
+        private Facets(int mpaId, int[] genreIds, int year) {
+            this.mpaId = mpaId;
+            this.genreIds = genreIds;
+            this.year = year;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый индекс названий и описаний фильмов в памяти. Для каждого слова хранится
+ * отсортированный массив id фильмов, слова упорядочены, поэтому поиск по префиксу - это диапазон карты.
+ * Поиск по подстроке сначала находит слова через индекс триграмм, а затем объединяет их списки фильмов.
+ * <p>
+ * Релевантность слова запроса: совпадение слова целиком - 3, префикс - 2, подстрока - 1,
+ * совпадение в названии весит вдвое больше, чем в описании. Фильм должен содержать все слова запроса,
+ * при равной релевантности выше фильм с большим количеством лайков.
+ * <p>
+ * Короткий запрос совпадает по префиксу с большей частью каталога, поэтому сортируются не все
+ * найденные фильмы, а только первые count: фильмы группируются по релевантности, и из групп
+ * с наибольшей релевантностью первые по лайкам отбираются через {@link TopK}.
+ */
+@Component
+public class FilmSearchIndex {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int SUBSTRING = 1;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final NavigableMap<String, int[]> filmsByTitleToken = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, int[]> filmsByDescriptionToken = new ConcurrentSkipListMap<>();
+    // Слова обоих полей, в которых встречается триграмма
+    private final Map<String, Set<String>> tokensByTrigram = new ConcurrentHashMap<>();
+    // Слова, под которыми фильм проиндексирован сейчас, - чтобы убрать их при обновлении фильма
+    private final Map<Integer, Set<String>> titleTokensByFilm = new HashMap<>();
+    private final Map<Integer, Set<String>> descriptionTokensByFilm = new HashMap<>();
+
+    /**
+     * Индексирует фильм или заменяет его прежние название и описание.
+     */
+    public synchronized void index(int filmId, String name, String description) {
+        reindex(filmId, tokenize(name), titleTokensByFilm, filmsByTitleToken);
+        reindex(filmId, tokenize(description), descriptionTokensByFilm, filmsByDescriptionToken);
+    }
+
+    /**
+     * @param likes количество лайков фильма по его id, используется при равной релевантности
+     * @return не больше count id найденных фильмов по убыванию релевантности
+     */
+    public int[] search(String query, boolean byTitle, boolean byDescription, int count, IntUnaryOperator likes) {
+        Set<String> terms = tokenize(query);
+        Map<Integer, Integer> scores = null;
+        for (String term : terms) {
+            Map<Integer, Integer> termScores = new HashMap<>();
+            if (byTitle) {
+                match(term, filmsByTitleToken, TITLE_WEIGHT, termScores);
+            }
+            if (byDescription) {
+                match(term, filmsByDescriptionToken, DESCRIPTION_WEIGHT, termScores);
+            }
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Остаются только фильмы, в которых нашлись все слова запроса
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((filmId, score) -> score + termScores.get(filmId));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null || count <= 0) {
+            return IntArrays.EMPTY;
+        }
+        // Различных значений релевантности немного, поэтому группы по ней небольшие по числу
+        NavigableMap<Integer, List<Integer>> filmsByRelevance = new TreeMap<>(Collections.reverseOrder());
+        scores.forEach((filmId, score) -> filmsByRelevance.computeIfAbsent(score, key -> new ArrayList<>()).add(filmId));
+        int[] result = new int[Math.min(count, scores.size())];
+        int size = 0;
+        for (List<Integer> films : filmsByRelevance.values()) {
+            TopK top = new TopK(Math.min(films.size(), result.length - size));
+            for (int filmId : films) {
+                top.offer(filmId, likes.applyAsInt(filmId));
+            }
+            for (int filmId : top.toIds()) {
+                result[size++] = filmId;
+            }
+            if (size == result.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void match(String term, NavigableMap<String, int[]> index, int weight, Map<Integer, Integer> scores) {
+        addScores(index.get(term), EXACT * weight, scores);
+        for (int[] filmIds : index.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+            addScores(filmIds, PREFIX * weight, scores);
+        }
+        if (term.length() < TRIGRAM_LENGTH) {
+            return;
+        }
+        for (String token : findTokensContaining(term)) {
+            if (!token.startsWith(term)) {
+                addScores(index.get(token), SUBSTRING * weight, scores);
+            }
+        }
+    }
+
+    private static void addScores(int[] filmIds, int score, Map<Integer, Integer> scores) {
+        for (int filmId : IntArrays.getOrEmpty(filmIds)) {
+            scores.merge(filmId, score, Math::max);
+        }
+    }
+
+    private List<String> findTokensContaining(String term) {
+        // Проверяются только слова из самого короткого списка триграмм запроса
+        Set<String> candidates = null;
+        for (String trigram : trigrams(term)) {
+            Set<String> tokens = tokensByTrigram.get(trigram);
+            if (tokens == null) {
+                return List.of();
+            }
+            if (candidates == null || tokens.size() < candidates.size()) {
+                candidates = tokens;
+            }
+        }
+        List<String> result = new ArrayList<>();
+        for (String token : candidates) {
+            if (token.contains(term)) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private void reindex(int filmId, Set<String> tokens, Map<Integer, Set<String>> tokensByFilm,
+                         NavigableMap<String, int[]> index) {
+        Set<String> previous = tokensByFilm.getOrDefault(filmId, Set.of());
+        for (String token : previous) {
+            if (!tokens.contains(token)) {
+                index.computeIfPresent(token, (key, filmIds) -> IntArrays.delete(filmIds, filmId));
+                if (!filmsByTitleToken.containsKey(token) && !filmsByDescriptionToken.containsKey(token)) {
+                    for (String trigram : trigrams(token)) {
+                        tokensByTrigram.computeIfPresent(trigram, (key, set) -> {
+                            set.remove(token);
+                            return set.isEmpty() ? null : set;
+                        });
+                    }
+                }
+            }
+        }
+        for (String token : tokens) {
+            if (!previous.contains(token)) {
+                index.compute(token, (key, filmIds) -> IntArrays.insert(filmIds, filmId));
+                for (String trigram : trigrams(token)) {
+                    tokensByTrigram.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(token);
+                }
+            }
+        }
+        tokensByFilm.put(filmId, tokens);
+    }
+
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> trigrams(String token) {
+        List<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + TRIGRAM_LENGTH <= token.length(); i++) {
+            trigrams.add(token.substring(i, i + TRIGRAM_LENGTH));
+        }
+        return trigrams;
+    }
+}
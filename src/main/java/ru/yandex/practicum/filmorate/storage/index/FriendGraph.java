@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф дружбы, который хранится в памяти и обновляется вместе с таблицей user_friend.
+ * Друзья каждого пользователя хранятся отсортированным массивом int, поэтому общие друзья
+ * находятся слиянием двух массивов за O(n + m) без обращения к базе данных.
+ * <p>
+ * Массивы не изменяются после публикации: при изменении создается новая копия,
+ * поэтому читатели работают без блокировок.
+ */
+@Component
+public class FriendGraph {
+    // Кого пользователь добавил в друзья
+    private final Map<Integer, int[]> friends = new ConcurrentHashMap<>();
+    // Кто добавил пользователя в друзья - нужно, чтобы удалить пользователя из чужих списков
+    private final Map<Integer, int[]> followers = new ConcurrentHashMap<>();
+
+    /**
+     * Заменяет граф целиком. Массивы друзей должны быть отсортированы по возрастанию.
+     */
+    public synchronized void rebuild(Map<Integer, int[]> adjacency) {
+        friends.clear();
+        followers.clear();
+        adjacency.forEach((userId, friendIds) -> {
+            if (friendIds.length > 0) {
+                friends.put(userId, friendIds);
+            }
+        });
+        followers.putAll(IntArrays.reverse(friends));
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friends.compute(userId, (id, current) -> IntArrays.insert(current, friendId));
+        followers.compute(friendId, (id, current) -> IntArrays.insert(current, userId));
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friends.computeIfPresent(userId, (id, current) -> IntArrays.delete(current, friendId));
+        followers.computeIfPresent(friendId, (id, current) -> IntArrays.delete(current, userId));
+    }
+
+    /**
+     * Удаляет пользователя вместе со всеми его связями, как это делает каскадное удаление в базе.
+     */
+    public void removeUser(int userId) {
+        for (int friendId : IntArrays.getOrEmpty(friends.remove(userId))) {
+            followers.computeIfPresent(friendId, (id, current) -> IntArrays.delete(current, userId));
+        }
+        for (int followerId : IntArrays.getOrEmpty(followers.remove(userId))) {
+            friends.computeIfPresent(followerId, (id, current) -> IntArrays.delete(current, userId));
+        }
+    }
+
+    public boolean isFriend(int userId, int friendId) {
+        return IntArrays.contains(getFriends(userId), friendId);
+    }
+
+    /**
+     * Возвращает друзей пользователя по возрастанию id. Массив нельзя изменять.
+     */
+    public int[] getFriends(int userId) {
+        return IntArrays.getOrEmpty(friends.get(userId));
+    }
+
+    public int[] findCommonFriends(int userId, int otherId) {
+        return IntArrays.intersect(getFriends(userId), getFriends(otherId));
+    }
+
+    /**
+     * Рекомендует пользователей, у которых больше всего общих друзей с данным. Обход идет на глубину 2:
+     * от друзей пользователя к тем, кто тоже добавил их в друзья. Просматривается не больше maxEdges связей,
+     * поэтому для пользователей с огромным числом друзей результат строится по части графа.
+     *
+     * @return id рекомендованных пользователей по убыванию числа общих друзей, при равенстве - по возрастанию id
+     */
+    public int[] findRecommendedFriends(int userId, int count, int maxEdges) {
+        int[] friendIds = getFriends(userId);
+        int[] candidates = new int[16];
+        int size = 0;
+        int visited = 0;
+        traversal:
+        for (int friendId : friendIds) {
+            for (int candidateId : IntArrays.getOrEmpty(followers.get(friendId))) {
+                if (visited++ == maxEdges) {
+                    break traversal;
+                }
+                if (candidateId == userId || IntArrays.contains(friendIds, candidateId)) {
+                    continue;
+                }
+                if (size == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, size * 2);
+                }
+                candidates[size++] = candidateId;
+            }
+        }
+        // После сортировки число общих друзей кандидата равно длине серии его id
+        Arrays.sort(candidates, 0, size);
+        TopK top = new TopK(Math.min(count, size));
+        top.offerRuns(candidates, size);
+        return top.toIds();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Операции над отсортированными массивами int, из которых состоят индексы связей в памяти.
+ * Массивы не изменяются на месте: каждая операция возвращает новую копию.
+ */
+final class IntArrays {
+    static final int[] EMPTY = new int[0];
+
+    private IntArrays() {
+    }
+
+    static int[] getOrEmpty(int[] ids) {
+        return ids == null ? EMPTY : ids;
+    }
+
+    static boolean contains(int[] ids, int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    static int[] insert(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        position = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    // null удаляет ключ из карты, чтобы не хранить пустые массивы
+    static int[] delete(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    static int[] intersect(int[] first, int[] second) {
+        int[] common = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == common.length ? common : Arrays.copyOf(common, size);
+    }
+
+    /**
+     * Строит обратные списки смежности. Массивы заполняются по заранее подсчитанным размерам,
+     * чтобы не копировать их при каждой вставке.
+     */
+    static Map<Integer, int[]> reverse(Map<Integer, int[]> adjacency) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        adjacency.values().forEach(ids -> {
+            for (int id : ids) {
+                counts.merge(id, 1, Integer::sum);
+            }
+        });
+        Map<Integer, int[]> reverse = new HashMap<>();
+        counts.forEach((id, count) -> reverse.put(id, new int[count]));
+        Map<Integer, Integer> filled = new HashMap<>();
+        adjacency.forEach((key, ids) -> {
+            for (int id : ids) {
+                reverse.get(id)[filled.merge(id, 1, Integer::sum) - 1] = key;
+            }
+        });
+        reverse.values().forEach(Arrays::sort);
+        return reverse;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Инвертированный индекс лайков в памяти: фильмы каждого пользователя и пользователи каждого фильма
+ * хранятся отсортированными массивами int. Обновляется вместе с таблицей film_user и используется
+ * для рекомендаций фильмов по схожести лайков.
+ * <p>
+ * Массивы не изменяются после публикации: при изменении создается новая копия,
+ * поэтому читатели работают без блокировок.
+ */
+@Component
+public class LikesIndex {
+    private final Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> usersByFilm = new ConcurrentHashMap<>();
+
+    /**
+     * Заменяет индекс целиком. Массивы пользователей должны быть отсортированы по возрастанию.
+     */
+    public synchronized void rebuild(Map<Integer, int[]> likesByFilm) {
+        usersByFilm.clear();
+        filmsByUser.clear();
+        likesByFilm.forEach((filmId, userIds) -> {
+            if (userIds.length > 0) {
+                usersByFilm.put(filmId, userIds);
+            }
+        });
+        filmsByUser.putAll(IntArrays.reverse(usersByFilm));
+    }
+
+    public void addLike(int filmId, int userId) {
+        usersByFilm.compute(filmId, (id, current) -> IntArrays.insert(current, userId));
+        filmsByUser.compute(userId, (id, current) -> IntArrays.insert(current, filmId));
+    }
+
+    public void removeLike(int filmId, int userId) {
+        usersByFilm.computeIfPresent(filmId, (id, current) -> IntArrays.delete(current, userId));
+        filmsByUser.computeIfPresent(userId, (id, current) -> IntArrays.delete(current, filmId));
+    }
+
+    public void removeUser(int userId) {
+        for (int filmId : IntArrays.getOrEmpty(filmsByUser.remove(userId))) {
+            usersByFilm.computeIfPresent(filmId, (id, current) -> IntArrays.delete(current, userId));
+        }
+    }
+
+    /**
+     * Возвращает фильмы, которые понравились пользователю, по возрастанию id. Массив нельзя изменять.
+     */
+    public int[] getLikedFilms(int userId) {
+        return IntArrays.getOrEmpty(filmsByUser.get(userId));
+    }
+
+    /**
+     * Рекомендует фильмы, которые понравились пользователям с наибольшим числом общих лайков.
+     * <ol>
+     *     <li>Для каждого фильма пользователя параллельно собираются другие поставившие ему лайк,
+     *     после сортировки число общих лайков соседа равно длине серии его id;</li>
+     *     <li>из neighbours ближайших соседей параллельно собираются фильмы, которых пользователь еще не лайкал,
+     *     вес фильма - сумма общих лайков соседей, которым он понравился.</li>
+     * </ol>
+     * Просматривается не больше maxEdges лайков чужих пользователей, поэтому для пользователей
+     * с огромным числом лайков соседи ищутся по части их фильмов.
+     *
+     * @return id фильмов по убыванию веса, при равенстве - по возрастанию id
+     */
+    public int[] findRecommendedFilms(int userId, int count, int neighbours, int maxEdges) {
+        int[] likedFilms = getLikedFilms(userId);
+        int films = 0;
+        long edges = 0;
+        while (films < likedFilms.length && edges < maxEdges) {
+            edges += getUsers(likedFilms[films++]).length;
+        }
+
+        int[] coLikers = Arrays.stream(likedFilms, 0, films)
+                .parallel()
+                .flatMap(filmId -> IntStream.of(getUsers(filmId)))
+                .filter(otherId -> otherId != userId)
+                .toArray();
+        Arrays.parallelSort(coLikers);
+        TopK nearest = new TopK(Math.min(neighbours, coLikers.length));
+        nearest.offerRuns(coLikers, coLikers.length);
+        int[] neighbourIds = nearest.toIds();
+        if (neighbourIds.length == 0) {
+            return IntArrays.EMPTY;
+        }
+
+        // Ключ - id фильма в старших 32 битах и вес соседа в младших, сортировка группирует ключи по фильму
+        long[] candidates = IntStream.of(neighbourIds)
+                .parallel()
+                .mapToObj(neighbourId -> {
+                    int[] neighbourFilms = getLikedFilms(neighbourId);
+                    int weight = IntArrays.intersect(likedFilms, neighbourFilms).length;
+                    return IntStream.of(neighbourFilms)
+                            .filter(filmId -> !IntArrays.contains(likedFilms, filmId))
+                            .mapToLong(filmId -> ((long) filmId << 32) | weight);
+                })
+                .flatMapToLong(keys -> keys)
+                .toArray();
+        Arrays.parallelSort(candidates);
+        TopK top = new TopK(Math.min(count, candidates.length));
+        for (int from = 0; from < candidates.length; ) {
+            int filmId = (int) (candidates[from] >>> 32);
+            int weight = 0;
+            int to = from;
+            while (to < candidates.length && (int) (candidates[to] >>> 32) == filmId) {
+                weight += (int) candidates[to++];
+            }
+            top.offer(filmId, weight);
+            from = to;
+        }
+        return top.toIds();
+    }
+
+    private int[] getUsers(int filmId) {
+        return IntArrays.getOrEmpty(usersByFilm.get(filmId));
+    }
+}
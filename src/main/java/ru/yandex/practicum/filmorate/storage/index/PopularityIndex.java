@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Индекс популярности фильмов, который хранится в памяти и обновляется при каждом лайке.
+ * Фильмы упорядочены по убыванию количества лайков, при равенстве - по возрастанию id,
+ * поэтому первые K фильмов выбираются за O(K) без обращения к базе данных.
+ */
+@Component
+public class PopularityIndex {
+    // Во сколько раз множество фильмов должно быть меньше рейтинга, чтобы его выгоднее было отсортировать
+    private static final int SMALL_SET_RATIO = 8;
+
+    // Количество лайков каждого фильма
+    private final Map<Integer, Integer> likesByFilm = new ConcurrentHashMap<>();
+    // Ключи вида (Integer.MAX_VALUE - лайки) << 32 | id фильма, естественный порядок которых совпадает с рейтингом
+    private final ConcurrentSkipListSet<Long> ranking = new ConcurrentSkipListSet<>();
+
+    public void rebuild(Map<Integer, Integer> likes) {
+        likesByFilm.clear();
+        ranking.clear();
+        likes.forEach((filmId, count) -> {
+            likesByFilm.put(filmId, count);
+            ranking.add(key(filmId, count));
+        });
+    }
+
+    public void addFilm(int filmId) {
+        likesByFilm.computeIfAbsent(filmId, id -> {
+            ranking.add(key(id, 0));
+            return 0;
+        });
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        likesByFilm.compute(filmId, (id, count) -> {
+            int oldCount = count == null ? 0 : count;
+            int newCount = Math.max(0, oldCount + delta);
+            // Новый ключ добавляется раньше удаления старого, чтобы читатели не теряли фильм
+            ranking.add(key(id, newCount));
+            if (count != null && newCount != oldCount) {
+                ranking.remove(key(id, oldCount));
+            }
+            return newCount;
+        });
+    }
+
+    public int getLikes(int filmId) {
+        return likesByFilm.getOrDefault(filmId, 0);
+    }
+
+    public boolean contains(int filmId) {
+        return likesByFilm.containsKey(filmId);
+    }
+
+    public int[] findTopFilmIds(int count) {
+        return findTopFilmIds(count, null, 0);
+    }
+
+    /**
+     * Возвращает первые count фильмов рейтинга из множества films, у которых не меньше minLikes лайков.
+     *
+     * @param films id допустимых фильмов или null, если подходят все фильмы
+     */
+    public int[] findTopFilmIds(int count, BitSet films, int minLikes) {
+        if (films != null && (long) films.cardinality() * SMALL_SET_RATIO < likesByFilm.size()) {
+            return findTopFilmIdsInSmallSet(count, films, minLikes);
+        }
+        int[] ids = new int[Math.min(count, likesByFilm.size())];
+        Set<Integer> seen = new HashSet<>();
+        int size = 0;
+        Iterator<Long> iterator = ranking.iterator();
+        while (size < ids.length && iterator.hasNext()) {
+            long key = iterator.next();
+            // Рейтинг упорядочен по убыванию лайков, дальше фильмов с minLikes лайками нет
+            if (likes(key) < minLikes) {
+                break;
+            }
+            int filmId = (int) key;
+            // Во время обновления фильм может кратковременно встречаться дважды
+            if ((films == null || films.get(filmId)) && seen.add(filmId)) {
+                ids[size++] = filmId;
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    // Небольшое множество дешевле отсортировать целиком, чем искать его фильмы в рейтинге
+    private int[] findTopFilmIdsInSmallSet(int count, BitSet films, int minLikes) {
+        long[] keys = new long[films.cardinality()];
+        int size = 0;
+        for (int filmId = films.nextSetBit(0); filmId >= 0; filmId = films.nextSetBit(filmId + 1)) {
+            Integer likes = likesByFilm.get(filmId);
+            if (likes != null && likes >= minLikes) {
+                keys[size++] = key(filmId, likes);
+            }
+        }
+        Arrays.sort(keys, 0, size);
+        int[] ids = new int[Math.min(count, size)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) keys[i];
+        }
+        return ids;
+    }
+
+    private static int likes(long key) {
+        return Integer.MAX_VALUE - (int) (key >>> 32);
+    }
+
+    private static long key(int filmId, int likes) {
+        return ((long) (Integer.MAX_VALUE - likes) << 32) | (filmId & 0xFFFFFFFFL);
+    }
+}
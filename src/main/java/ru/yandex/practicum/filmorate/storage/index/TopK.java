@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+
+/**
+ * Первые K элементов по весу на двоичной куче из примитивных ключей: вес в старших 32 битах,
+ * инвертированный id в младших, поэтому при равном весе выше оказывается меньший id.
+ */
+final class TopK {
+    private final long[] heap;
+    private int size;
+
+    TopK(int capacity) {
+        heap = new long[Math.max(capacity, 0)];
+    }
+
+    void offer(int id, int weight) {
+        long key = ((long) weight << 32) | (Integer.MAX_VALUE - id);
+        if (size < heap.length) {
+            heap[size] = key;
+            siftUp(size++);
+        } else if (size > 0 && key > heap[0]) {
+            heap[0] = key;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Добавляет id из отсортированного массива с весом, равным числу его повторов.
+     */
+    void offerRuns(int[] sortedIds, int size) {
+        for (int from = 0; from < size; ) {
+            int to = from;
+            while (to < size && sortedIds[to] == sortedIds[from]) {
+                to++;
+            }
+            offer(sortedIds[from], to - from);
+            from = to;
+        }
+    }
+
+    int[] toIds() {
+        long[] keys = Arrays.copyOf(heap, size);
+        Arrays.sort(keys);
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = Integer.MAX_VALUE - (int) keys[size - 1 - i];
+        }
+        return ids;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] <= heap[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < size && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(smallest, index);
+            index = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        long key = heap[first];
+        heap[first] = heap[second];
+        heap[second] = key;
+    }
+}
@@ -0,0 +1,79 @@
+CREATE TABLE IF NOT EXISTS genre
+(
+    genre_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name     varchar(40) NOT NULL UNIQUE,
+    CONSTRAINT check_if_blank CHECK (name <> '')
+);
+
+CREATE TABLE IF NOT EXISTS rating
+(
+    rating_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        varchar(40) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS film
+(
+    film_id      INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         varchar(40) NOT NULL UNIQUE,
+    description  varchar(200) DEFAULT 'Нет описания',
+    release_date date         NOT NULL,
+    duration     integer          NOT NULL,
+    rate         integer      NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS film_rating
+(
+    film_id  integer REFERENCES film (film_id) ON DELETE CASCADE PRIMARY KEY,
+    rating_id integer REFERENCES rating (rating_id) ON DELETE RESTRICT
+);
+
+CREATE TABLE IF NOT EXISTS film_genre
+(
+    film_id  integer NOT NULL,
+    genre_id integer NOT NULL,
+    CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id)
+);
+
+CREATE INDEX IF NOT EXISTS film_genre_genre_id_idx ON film_genre (genre_id);
+
+ALTER TABLE film_genre ADD CONSTRAINT IF NOT EXISTS film_genre_film_fk
+    FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE film_genre ADD CONSTRAINT IF NOT EXISTS film_genre_genre_fk
+    FOREIGN KEY (genre_id) REFERENCES genre (genre_id) ON DELETE RESTRICT;
+
+CREATE TABLE IF NOT EXISTS users
+(
+    user_id  INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email    varchar(40) NOT NULL UNIQUE,
+    login    varchar(40) NOT NULL UNIQUE,
+    name     varchar(40),
+    birthday date
+);
+
+CREATE TABLE IF NOT EXISTS user_friend
+(
+    user_id   integer NOT NULL,
+    friend_id integer NOT NULL,
+    CONSTRAINT user_friend_pk PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE INDEX IF NOT EXISTS user_friend_friend_id_idx ON user_friend (friend_id);
+
+ALTER TABLE user_friend ADD CONSTRAINT IF NOT EXISTS user_friend_user_fk
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+ALTER TABLE user_friend ADD CONSTRAINT IF NOT EXISTS user_friend_friend_fk
+    FOREIGN KEY (friend_id) REFERENCES users (user_id) ON DELETE CASCADE;
+
+CREATE TABLE IF NOT EXISTS film_user
+(
+    film_id integer NOT NULL,
+    user_id integer NOT NULL,
+    CONSTRAINT film_user_pk PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS film_user_user_id_idx ON film_user (user_id);
+
+ALTER TABLE film_user ADD CONSTRAINT IF NOT EXISTS film_user_film_fk
+    FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE film_user ADD CONSTRAINT IF NOT EXISTS film_user_user_fk
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
@@ -0,0 +1,60 @@
+-- Базы, созданные до появления миграций, получили от V1 только новые индексы и внешние ключи:
+-- CREATE TABLE IF NOT EXISTS не меняет существующие таблицы. Здесь таблицы связей пересоздаются
+-- с первичными ключами без повторяющихся строк, а счетчик лайков пересчитывается по film_user.
+-- На базах, созданных с V1, миграция только переносит те же строки в таблицы той же структуры.
+
+CREATE TABLE film_genre_new
+(
+    film_id  integer NOT NULL,
+    genre_id integer NOT NULL
+);
+INSERT INTO film_genre_new (film_id, genre_id)
+    SELECT DISTINCT film_id, genre_id FROM film_genre WHERE film_id IS NOT NULL AND genre_id IS NOT NULL;
+DROP TABLE film_genre;
+ALTER TABLE film_genre_new RENAME TO film_genre;
+
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id);
+CREATE INDEX film_genre_genre_id_idx ON film_genre (genre_id);
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_film_fk
+    FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_genre_fk
+    FOREIGN KEY (genre_id) REFERENCES genre (genre_id) ON DELETE RESTRICT;
+
+CREATE TABLE user_friend_new
+(
+    user_id   integer NOT NULL,
+    friend_id integer NOT NULL
+);
+INSERT INTO user_friend_new (user_id, friend_id)
+    SELECT DISTINCT user_id, friend_id FROM user_friend WHERE user_id IS NOT NULL AND friend_id IS NOT NULL;
+DROP TABLE user_friend;
+ALTER TABLE user_friend_new RENAME TO user_friend;
+
+ALTER TABLE user_friend ADD CONSTRAINT user_friend_pk PRIMARY KEY (user_id, friend_id);
+CREATE INDEX user_friend_friend_id_idx ON user_friend (friend_id);
+ALTER TABLE user_friend ADD CONSTRAINT user_friend_user_fk
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+ALTER TABLE user_friend ADD CONSTRAINT user_friend_friend_fk
+    FOREIGN KEY (friend_id) REFERENCES users (user_id) ON DELETE CASCADE;
+
+CREATE TABLE film_user_new
+(
+    film_id integer NOT NULL,
+    user_id integer NOT NULL
+);
+INSERT INTO film_user_new (film_id, user_id)
+    SELECT DISTINCT film_id, user_id FROM film_user WHERE film_id IS NOT NULL AND user_id IS NOT NULL;
+DROP TABLE film_user;
+ALTER TABLE film_user_new RENAME TO film_user;
+
+ALTER TABLE film_user ADD CONSTRAINT film_user_pk PRIMARY KEY (film_id, user_id);
+CREATE INDEX film_user_user_id_idx ON film_user (user_id);
+ALTER TABLE film_user ADD CONSTRAINT film_user_film_fk
+    FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE film_user ADD CONSTRAINT film_user_user_fk
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+
+-- Счетчик лайков меняется как rate = rate ± 1, поэтому он не может быть NULL
+UPDATE film SET rate = (SELECT count(*) FROM film_user WHERE film_user.film_id = film.film_id);
+ALTER TABLE film ALTER COLUMN rate SET DEFAULT 0;
+ALTER TABLE film ALTER COLUMN rate SET NOT NULL;
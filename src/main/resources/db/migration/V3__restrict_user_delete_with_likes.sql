@@ -0,0 +1,6 @@
+-- Лайки пользователя удаляются приложением вместе с уменьшением film.rate в той же транзакции,
+-- что и сам пользователь. Каскадное удаление молча убрало бы лайк, поставленный между этими шагами,
+-- без изменения счетчика, поэтому внешний ключ теперь запрещает удалять пользователя с лайками.
+ALTER TABLE film_user DROP CONSTRAINT film_user_user_fk;
+ALTER TABLE film_user ADD CONSTRAINT film_user_user_fk
+    FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE RESTRICT;
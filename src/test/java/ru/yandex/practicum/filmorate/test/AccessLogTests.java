@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.logging.detail-sample-rate=1")
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class AccessLogTests {
+    private final MockMvc mockMvc;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void testAccessLineAndSampledDetail() throws Exception {
+        User user = userStorage.createUser(new User(0, "access@mail.ru", "access", "Access", LocalDate.of(1990, 1, 1)));
+
+        // События перехватываются синхронно на логгерах, а не в выводе асинхронных аппендеров
+        Logger accessLogger = (Logger) LoggerFactory.getLogger("ru.yandex.practicum.filmorate.access");
+        Logger storageLogger = (Logger) LoggerFactory.getLogger(UserDbStorage.class);
+        ListAppender<ILoggingEvent> access = attach(accessLogger);
+        ListAppender<ILoggingEvent> detail = attach(storageLogger);
+        try {
+            mockMvc.perform(get("/users/" + user.getId())).andExpect(status().isOk());
+            mockMvc.perform(get("/users/100500")).andExpect(status().isNotFound());
+        } finally {
+            accessLogger.detachAppender(access);
+            storageLogger.detachAppender(detail);
+        }
+
+        assertThat(messages(access))
+                .anyMatch(line -> line.startsWith("method=GET uri=/users/" + user.getId()
+                        + " handler=UserController.getUserById status=200 ") && line.endsWith(" sampled=true"))
+                .anyMatch(line -> line.startsWith("method=GET uri=/users/100500"
+                        + " handler=UserController.getUserById status=404 ") && line.endsWith(" sampled=true"));
+        // DEBUG-сообщение хранилища пропущено, потому что запрос отобран для подробного журнала.
+        // Сообщение проверяется по уровню и аргументам, а не по тексту на русском языке
+        assertThat(detail.list).anyMatch(event -> event.getLevel() == Level.DEBUG
+                && List.of(user.getId(), "access").equals(List.of(event.getArgumentArray())));
+    }
+
+    private static ListAppender<ILoggingEvent> attach(Logger logger) {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        return appender;
+    }
+
+    private static List<String> messages(ListAppender<ILoggingEvent> appender) {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    }
+}
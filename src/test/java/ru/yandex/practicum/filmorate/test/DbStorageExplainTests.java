@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.impl.IndexedQueries;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет по планам выполнения H2, что запросы к таблицам связей используют первичные ключи
+ * и обратные индексы, а не полный обход таблицы.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DbStorageExplainTests {
+    // H2 дает индексам первичных ключей служебные имена вида PRIMARY_KEY_F
+    private static final String PRIMARY_KEY = "PUBLIC\\.PRIMARY_KEY_\\w+: ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Test
+    public void testGenresOfFilmsUseFilmGenrePrimaryKey() {
+        String plan = namedJdbcTemplate.queryForObject("EXPLAIN " + IndexedQueries.GENRES_OF_FILMS,
+                new MapSqlParameterSource("ids", List.of(1, 2, 3)), String.class);
+
+        assertThat(plan).containsPattern(PRIMARY_KEY + Pattern.quote("FILM_ID IN("));
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testLikeLookupUsesFilmUserPrimaryKey() {
+        String plan = explain(IndexedQueries.LIKE, 1, 1);
+
+        assertThat(plan).containsPattern(PRIMARY_KEY + Pattern.quote("FILM_ID = ?1"));
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testLikeDeleteUsesFilmUserPrimaryKey() {
+        String plan = explain(IndexedQueries.DELETE_LIKE, 1, 1);
+
+        assertThat(plan).containsPattern(PRIMARY_KEY + Pattern.quote("FILM_ID = ?1"));
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testLikedFilmsOfUserUseReverseIndex() {
+        String plan = explain(IndexedQueries.LIKED_FILMS, 1);
+
+        assertThat(plan).contains("PUBLIC.FILM_USER_USER_ID_IDX: USER_ID = ?1");
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testUsersByIdsUseUsersPrimaryKey() {
+        String plan = namedJdbcTemplate.queryForObject("EXPLAIN " + IndexedQueries.USERS_BY_IDS,
+                new MapSqlParameterSource("ids", List.of(1, 2, 3)), String.class);
+
+        assertThat(plan).containsPattern(PRIMARY_KEY + Pattern.quote("USER_ID IN("));
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testFriendshipDeleteUsesUserFriendPrimaryKey() {
+        String plan = explain(IndexedQueries.DELETE_FRIENDSHIP, 1, 2);
+
+        assertThat(plan).containsPattern(PRIMARY_KEY + Pattern.quote("USER_ID = ?1"));
+        assertIndexOnly(plan);
+    }
+
+    @Test
+    public void testFriendsOfDeletedUserUseReverseIndex() {
+        // По этому условию каскадно удаляются дружбы при удалении пользователя
+        String plan = explain("DELETE FROM user_friend WHERE friend_id = ?", 1);
+
+        assertThat(plan).contains("PUBLIC.USER_FRIEND_FRIEND_ID_IDX: FRIEND_ID = ?1");
+        assertIndexOnly(plan);
+    }
+
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+    }
+
+    private void assertIndexOnly(String plan) {
+        assertThat(plan)
+                .as("План выполнения:%n%s", plan)
+                .doesNotContain("tableScan")
+                .doesNotContainPattern("\\.\\w+ \\*/");
+    }
+}
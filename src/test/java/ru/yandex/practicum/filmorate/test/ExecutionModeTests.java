@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "filmorate.execution.mode=async",
+        "filmorate.execution.async.threads=1",
+        "filmorate.execution.async.queue-capacity=1"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ExecutionModeTests {
+    private final TestRestTemplate restTemplate;
+    private final ThreadPoolTaskExecutor requestExecutor;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void testHandlerRunsInRequestPoolAndFullQueueIsRejected() throws Exception {
+        User user = userStorage.createUser(new User(0, "async@mail.ru", "async", "Async", LocalDate.of(1990, 1, 1)));
+        long completedBefore = requestExecutor.getThreadPoolExecutor().getCompletedTaskCount();
+
+        assertThat(restTemplate.getForEntity("/users/" + user.getId(), User.class).getBody())
+                .extracting(User::getLogin).isEqualTo("async");
+        // Исключение обработчика из пула доходит до ErrorHandler
+        assertThat(restTemplate.getForEntity("/users/100500", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(requestExecutor.getThreadPoolExecutor().getCompletedTaskCount()).isEqualTo(completedBefore + 2);
+
+        // Единственный поток пула занят, одна задача ждет в очереди: новый запрос отклоняется сразу
+        CountDownLatch release = new CountDownLatch(1);
+        requestExecutor.execute(() -> await(release));
+        requestExecutor.execute(() -> {
+        });
+        try {
+            assertThat(restTemplate.getForEntity("/users", String.class).getStatusCode())
+                    .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        } finally {
+            release.countDown();
+        }
+        assertThat(restTemplate.getForEntity("/users", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void testRequestPoolIsShutDownWithContext() {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:shutdown",
+                        "--spring.main.banner-mode=off",
+                        "--filmorate.execution.mode=async");
+        ThreadPoolTaskExecutor executor = context.getBean("requestExecutor", ThreadPoolTaskExecutor.class);
+
+        context.close();
+
+        assertThat(executor.getThreadPoolExecutor().isShutdown()).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ExportService;
+import ru.yandex.practicum.filmorate.storage.dao.ExportStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ExportServiceTests {
+    private final ExportService exportService;
+    private final ExportStorage exportStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testExportFormats() throws IOException {
+        userStorage.createUser(new User(0, "first@mail.ru", "first", "Имя, \"в кавычках\"", LocalDate.of(1990, 1, 2)));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.export(List.of("users"), ExportService.Format.NDJSON, ndjson);
+        assertThat(ndjson.toString(StandardCharsets.UTF_8)).isEqualTo("{\"table\":\"users\",\"user_id\":1,"
+                + "\"email\":\"first@mail.ru\",\"login\":\"first\",\"name\":\"Имя, \\\"в кавычках\\\"\","
+                + "\"birthday\":\"1990-01-02\"}\n");
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportService.export(List.of("users", "user_friend"), ExportService.Format.CSV, csv);
+        assertThat(csv.toString(StandardCharsets.UTF_8)).isEqualTo("table,user_id,email,login,name,birthday\r\n"
+                + "users,1,first@mail.ru,first,\"Имя, \"\"в кавычках\"\"\",1990-01-02\r\n"
+                + "table,user_id,friend_id\r\n");
+    }
+
+    @Test
+    public void testExportReadsSingleSnapshot() {
+        userStorage.createUser(new User(0, "first@mail.ru", "first", null, LocalDate.of(1990, 1, 2)));
+        List<String> exported = new ArrayList<>();
+
+        exportStorage.exportSnapshot(List.of("film", "users"), new ExportStorage.RowHandler() {
+            @Override
+            public void startTable(String table, List<String> columns) {
+                if (table.equals("film")) {
+                    // Пользователь добавляется после начала выгрузки, но до чтения таблицы users
+                    jdbcTemplate.update("insert into users(email, login, name, birthday) "
+                            + "values ('second@mail.ru', 'second', 'second', '1991-01-01')");
+                }
+            }
+
+            @Override
+            public void row(Object[] values) {
+                exported.add((String) values[2]);
+            }
+        });
+
+        assertThat(exported).containsExactly("first");
+        assertThat(userStorage.findAllUsers()).hasSize(2);
+    }
+}
@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.exceptions.ObjectNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.metrics.QueryTrace;
+import ru.yandex.practicum.filmorate.metrics.QueryTracker;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.CachedFilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.CachedGenreAndMpaStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "filmorate.jdbc.tracing.enabled=true")
+@AutoConfigureTestDatabase
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDbStorageQueryCountTests {
+    private static final int FILMS_COUNT = 20;
+
+    private final FilmDbStorage filmStorage;
+    private final CachedFilmStorage cachedFilmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final CachedGenreAndMpaStorage genreAndMpaStorage;
+    private final DataSource dataSource;
+    private final PopularityIndex popularityIndex;
+    private final LikesIndex likesIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFacetIndex facetIndex;
+
+    private final List<Film> films = new ArrayList<>();
+
+    @BeforeAll
+    public void setUp() {
+        // Создаем пользователей и фильмы с жанрами и лайками
+        User first = userStorage.createUser(new User(0, "first@mail.ru", "first", "First", LocalDate.of(1990, 1, 1)));
+        User second = userStorage.createUser(new User(0, "second@mail.ru", "second", "Second", LocalDate.of(1991, 1, 1)));
+        for (int i = 1; i <= FILMS_COUNT; i++) {
+            Film film = Film.builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i))
+                    .duration(90 + i)
+                    .mpa(new Mpa(1 + i % 5, null))
+                    .genres(List.of(new Genre(1, null), new Genre(2 + i % 5, null)))
+                    .build();
+            films.add(filmStorage.createFilm(film));
+        }
+        filmStorage.addLike(films.get(0).getId(), first.getId());
+        filmStorage.addLike(films.get(0).getId(), second.getId());
+        filmStorage.addLike(films.get(1).getId(), first.getId());
+    }
+
+    @Test
+    public void testCachedFilmIsNotChangedThroughReturnedCopy() {
+        int filmId = films.get(2).getId();
+        cachedFilmStorage.findFilmById(filmId).orElseThrow().getGenres().clear();
+        cachedFilmStorage.findFilmsByIds(new int[]{filmId}).get(0).getGenres().clear();
+
+        assertThat(cachedFilmStorage.findFilmById(filmId).orElseThrow().getGenres()).hasSize(2);
+    }
+
+    @Test
+    public void testUnknownGenreAndMpaAreRejectedWithoutQueries() {
+        QueryTrace trace = QueryTracker.start();
+        assertThatThrownBy(() -> genreAndMpaStorage.findGenreById(1000)).isInstanceOf(ObjectNotFoundException.class);
+        assertThatThrownBy(() -> genreAndMpaStorage.findMpaById(1000)).isInstanceOf(ObjectNotFoundException.class);
+        trace.stop();
+
+        // Справочники не перечитываются из базы при запросе неизвестного идентификатора
+        assertThat(trace.getCount()).isZero();
+    }
+
+    @Test
+    public void testCreateFilmIsRolledBackWhenGenreInsertFails() {
+        int filmsBefore = filmStorage.findAllFilms().size();
+        int popularBefore = filmStorage.getPopular(1000).size();
+        Film film = Film.builder()
+                .name("Broken")
+                .description("Unknown genre")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(new Mpa(1, null))
+                .genres(List.of(new Genre(1, null), new Genre(1000, null)))
+                .build();
+
+        assertThatThrownBy(() -> filmStorage.createFilm(film)).isInstanceOf(DataIntegrityViolationException.class);
+
+        // Фильм и его рейтинг вставлены в той же транзакции и откатились, индекс популярности не изменился
+        assertThat(filmStorage.findAllFilms()).hasSize(filmsBefore);
+        assertThat(filmStorage.getPopular(1000)).hasSize(popularBefore);
+    }
+
+    @Test
+    public void testFindAllFilmsRunsFixedNumberOfQueries() {
+        QueryTrace trace = QueryTracker.start();
+        Collection<Film> allFilms = filmStorage.findAllFilms();
+
+        // Фильмы и жанры загружаются двумя запросами независимо от количества фильмов
+        trace.stop();
+        assertThat(trace.getCount()).isEqualTo(2);
+        assertThat(allFilms).hasSize(FILMS_COUNT);
+        Film first = allFilms.iterator().next();
+        assertThat(first.getRate()).isEqualTo(2);
+        assertThat(first.getMpa().getName()).isNotNull();
+        assertThat(first.getGenres()).extracting(Genre::getId).containsExactly(1, 3);
+        // Жанры и рейтинги берутся из справочников как общие экземпляры
+        List<Film> filmList = new ArrayList<>(allFilms);
+        assertThat(filmList.get(0).getMpa()).isSameAs(filmList.get(5).getMpa());
+        assertThat(filmList.get(0).getGenres().iterator().next()).isSameAs(filmList.get(1).getGenres().iterator().next());
+    }
+
+    @Test
+    public void testFindFilmByIdRunsFixedNumberOfQueries() {
+        QueryTrace trace = QueryTracker.start();
+        Film film = filmStorage.findFilmById(films.get(1).getId()).orElseThrow();
+
+        trace.stop();
+        assertThat(trace.getCount()).isEqualTo(2);
+        assertThat(film.getRate()).isEqualTo(1);
+        assertThat(film.getGenres()).hasSize(2);
+    }
+
+    @Test
+    public void testGetPopularRunsFixedNumberOfQueries() {
+        QueryTrace trace = QueryTracker.start();
+        Collection<Film> popular = filmStorage.getPopular(FILMS_COUNT);
+
+        trace.stop();
+        assertThat(trace.getCount()).isEqualTo(2);
+        assertThat(popular).hasSize(FILMS_COUNT);
+        assertThat(popular).allSatisfy(film -> assertThat(film.getGenres()).hasSize(2));
+        // Сначала самые популярные фильмы, при равном количестве лайков - по возрастанию id
+        assertThat(popular).extracting(Film::getRate).startsWith(2, 1, 0).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(popular).extracting(Film::getId).startsWith(films.get(0).getId(), films.get(1).getId(), films.get(2).getId());
+    }
+
+    @Test
+    public void testBatchLookupRunsFixedNumberOfQueriesAndKeepsOrder() {
+        int[] ids = {films.get(4).getId(), 1000, films.get(0).getId(), films.get(9).getId()};
+
+        QueryTrace trace = QueryTracker.start();
+        BatchResponse<Film> response = filmService.findFilmsByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+
+        // Фильмы загружаются одним IN-запросом, жанры - вторым, независимо от количества id
+        trace.stop();
+        assertThat(trace.getCount()).isEqualTo(2);
+        assertThat(response.getItems()).extracting(Film::getId).containsExactly(ids[0], ids[2], ids[3]);
+        assertThat(response.getItems().get(1).getRate()).isEqualTo(2);
+        assertThat(response.getItems()).allSatisfy(film -> assertThat(film.getGenres()).hasSize(2));
+        assertThat(response.getMissing()).containsExactly(1000);
+    }
+
+    @Test
+    public void testFindFilmsPagesByKeyset() {
+        List<Film> firstPage = new ArrayList<>(filmStorage.findFilms(0, 8));
+        List<Film> secondPage = new ArrayList<>(filmStorage.findFilms(firstPage.get(7).getId(), 8));
+        List<Film> lastPage = new ArrayList<>(filmStorage.findFilms(secondPage.get(7).getId(), 8));
+
+        assertThat(firstPage).hasSize(8);
+        assertThat(secondPage).hasSize(8);
+        assertThat(lastPage).hasSize(FILMS_COUNT - 16);
+        assertThat(secondPage.get(0).getId()).isGreaterThan(firstPage.get(7).getId());
+        assertThat(firstPage.get(0).getGenres()).hasSize(2);
+    }
+
+    @Test
+    public void testStreamAllFilmsVisitsEveryFilmInOrder() {
+        List<Integer> ids = new ArrayList<>();
+        filmStorage.streamAllFilms(film -> ids.add(film.getId()));
+
+        assertThat(ids).hasSize(FILMS_COUNT).isSorted();
+    }
+
+    @Test
+    public void testStreamAllFilmsNeedsOneConnection() throws Exception {
+        HikariConfig config = new HikariConfig();
+        try (Connection connection = dataSource.getConnection()) {
+            config.setJdbcUrl(connection.getMetaData().getURL());
+            config.setUsername(connection.getMetaData().getUserName());
+        }
+        config.setMaximumPoolSize(1);
+        config.setConnectionTimeout(250);
+        try (HikariDataSource pool = new HikariDataSource(config)) {
+            FilmDbStorage storage = new FilmDbStorage(new JdbcTemplate(pool), new NamedParameterJdbcTemplate(pool),
+                    popularityIndex, genreAndMpaStorage, likesIndex, searchIndex, facetIndex, 50, 1000, 8);
+            List<Integer> ids = new ArrayList<>();
+
+            // Жанры порции читаются, когда соединение курсора уже возвращено в пул из одного соединения
+            storage.streamAllFilms(film -> ids.add(film.getId()));
+
+            assertThat(ids).hasSize(FILMS_COUNT).isSorted();
+        }
+    }
+
+    @Test
+    public void testPageSizeIsLimited() {
+        assertThatThrownBy(() -> filmService.findFilms(null, 1001, FilmFilter.builder().build()))
+                .isInstanceOf(ValidateException.class);
+        assertThatThrownBy(() -> filmService.findFilms(null, 1001, FilmFilter.builder().mpaId(1).build()))
+                .isInstanceOf(ValidateException.class);
+        // Без размера страницы фильтр возвращает страницу размера по умолчанию
+        assertThat(filmService.findFilms(null, null, FilmFilter.builder().yearFrom(3000).build())).isEmpty();
+    }
+
+    @Test
+    public void testPageAfterOutOfRangeId() {
+        FilmFilter filter = FilmFilter.builder().mpaId(1).build();
+
+        assertThatThrownBy(() -> filmService.findFilms(-5, 10, filter)).isInstanceOf(ValidateException.class);
+        assertThatThrownBy(() -> filmService.findFilms(-5, 10, FilmFilter.builder().build()))
+                .isInstanceOf(ValidateException.class);
+        assertThat(filmService.findFilms(Integer.MAX_VALUE, 10, filter)).isEmpty();
+        assertThat(filmStorage.findFilmIds(filter, -5, 10)).isNotEmpty();
+    }
+
+    @Test
+    public void testRecommendationCountIsLimited() {
+        User user = userStorage.createUser(new User(0, "limit@mail.ru", "limit", "Limit", LocalDate.of(1992, 1, 1)));
+
+        assertThatThrownBy(() -> userService.findRecommendedFriends(user.getId(), 0))
+                .isInstanceOf(ValidateException.class);
+        assertThatThrownBy(() -> userService.findRecommendedFriends(user.getId(), 2000000000))
+                .isInstanceOf(ValidateException.class);
+        assertThat(userService.findRecommendedFriends(user.getId(), 1000)).isEmpty();
+        assertThatThrownBy(() -> userService.findRecommendedFilms(user.getId(), 0))
+                .isInstanceOf(ValidateException.class);
+        assertThatThrownBy(() -> userService.findRecommendedFilms(user.getId(), 2000000000))
+                .isInstanceOf(ValidateException.class);
+        assertThat(userService.findRecommendedFilms(user.getId(), 1000)).isEmpty();
+    }
+
+    @Test
+    public void testCachedFilmIsReadWithoutQueriesUntilUpdated() {
+        int filmId = films.get(2).getId();
+        cachedFilmStorage.findFilmById(filmId);
+
+        QueryTrace trace = QueryTracker.start();
+        Film cached = cachedFilmStorage.findFilmById(filmId).orElseThrow();
+        trace.stop();
+        assertThat(trace.getCount()).isZero();
+
+        cachedFilmStorage.updateFilm(cached.toBuilder().description("Updated").build());
+        assertThat(cachedFilmStorage.findFilmById(filmId).orElseThrow().getDescription()).isEqualTo("Updated");
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.storage.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmFacetIndexTests {
+    private FilmFacetIndex facetIndex;
+    private PopularityIndex popularityIndex;
+
+    @BeforeEach
+    public void setUp() {
+        facetIndex = new FilmFacetIndex();
+        facetIndex.index(1, 1, new int[]{1, 2}, 1994);
+        facetIndex.index(2, 2, new int[]{2}, 2001);
+        facetIndex.index(3, 1, new int[]{3}, 2010);
+        facetIndex.index(4, 3, new int[]{1}, 2010);
+
+        // Фильмы 5-20 без лайков и признаков нужны, чтобы маленькие множества сортировались отдельно от рейтинга
+        Map<Integer, Integer> likes = new HashMap<>(Map.of(1, 3, 2, 7, 3, 1, 4, 5));
+        for (int filmId = 5; filmId <= 20; filmId++) {
+            likes.put(filmId, 0);
+        }
+        popularityIndex = new PopularityIndex();
+        popularityIndex.rebuild(likes);
+    }
+
+    @Test
+    public void testFacetsAreIntersected() {
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().genreId(2).build()))).containsExactly(1, 2);
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().mpaId(1).yearFrom(2000).build()))).containsExactly(3);
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().yearFrom(2001).yearTo(2010).build()))).containsExactly(2, 3, 4);
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().genreId(6).build()))).isEmpty();
+    }
+
+    @Test
+    public void testReindexMovesFilmBetweenFacets() {
+        facetIndex.index(1, 2, new int[]{3}, 1994);
+
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().genreId(2).build()))).containsExactly(2);
+        assertThat(ids(facetIndex.filter(FilmFilter.builder().genreId(3).mpaId(2).build()))).containsExactly(1);
+    }
+
+    @Test
+    public void testPopularFilmsWithinFilter() {
+        BitSet films = facetIndex.filter(FilmFilter.builder().yearFrom(2000).build());
+
+        assertThat(popularityIndex.findTopFilmIds(10, films, 0)).containsExactly(2, 4, 3);
+        assertThat(popularityIndex.findTopFilmIds(10, films, 5)).containsExactly(2, 4);
+        assertThat(popularityIndex.findTopFilmIds(1, null, 0)).containsExactly(2);
+        // Множество из одного фильма сортируется отдельно, без обхода рейтинга
+        assertThat(popularityIndex.findTopFilmIds(10, facetIndex.filter(FilmFilter.builder().mpaId(3).build()), 0))
+                .containsExactly(4);
+    }
+
+    private static int[] ids(BitSet films) {
+        return films.stream().toArray();
+    }
+}
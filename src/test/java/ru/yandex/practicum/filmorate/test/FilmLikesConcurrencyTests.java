@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmLikesConcurrencyTests {
+    private static final int USERS_COUNT = 2000;
+    private static final int THREADS_COUNT = 16;
+
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final PopularityIndex popularityIndex;
+    private final LikesIndex likesIndex;
+
+    @Test
+    public void testParallelLikesKeepExactCount() throws Exception {
+        Film film = filmStorage.createFilm(Film.builder()
+                .name("Premiere")
+                .description("Description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(new Mpa(1, null))
+                .build());
+        List<Integer> userIds = createUsers();
+
+        // Каждый пользователь ставит лайк дважды, повторные лайки должны быть отклонены
+        List<Callable<Boolean>> likes = new ArrayList<>();
+        for (int userId : userIds) {
+            likes.add(() -> tryLike(film.getId(), userId));
+        }
+        for (int userId : userIds) {
+            likes.add(() -> tryLike(film.getId(), userId));
+        }
+        assertThat(countSuccessful(likes)).isEqualTo(USERS_COUNT);
+        assertThat(filmStorage.findFilmById(film.getId()).orElseThrow().getRate()).isEqualTo(USERS_COUNT);
+        assertThat(countLikesInTable(film.getId())).isEqualTo(USERS_COUNT);
+
+        // Половина пользователей параллельно убирает лайк
+        List<Callable<Boolean>> removals = new ArrayList<>();
+        for (int userId : userIds.subList(0, USERS_COUNT / 2)) {
+            removals.add(() -> {
+                filmStorage.removeLike(film.getId(), userId);
+                return true;
+            });
+        }
+        assertThat(countSuccessful(removals)).isEqualTo(USERS_COUNT / 2);
+        assertThat(filmStorage.findFilmById(film.getId()).orElseThrow().getRate()).isEqualTo(USERS_COUNT / 2);
+        assertThat(countLikesInTable(film.getId())).isEqualTo(USERS_COUNT / 2);
+        assertThat(filmStorage.getPopular(1)).extracting(Film::getRate).containsExactly(USERS_COUNT / 2);
+    }
+
+    @Test
+    public void testRemoveUserUncountsLikesAndDatabaseRejectsOrphans() {
+        Film film = filmStorage.createFilm(Film.builder()
+                .name("Removed fans")
+                .description("Description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(new Mpa(1, null))
+                .build());
+        User first = userService.createUser(new User(0, "leaving@mail.ru", "leaving", "Leaving", LocalDate.of(1990, 1, 1)));
+        User second = userService.createUser(new User(0, "staying@mail.ru", "staying", "Staying", LocalDate.of(1990, 1, 1)));
+        filmStorage.addLike(film.getId(), first.getId());
+        filmStorage.addLike(film.getId(), second.getId());
+
+        userService.removeUser(first.getId());
+
+        assertThat(filmStorage.findFilmById(film.getId()).orElseThrow().getRate()).isEqualTo(1);
+        assertThat(countLikesInTable(film.getId())).isEqualTo(1);
+        // Пользователя с лайками нельзя удалить в обход счетчиков
+        assertThatThrownBy(() -> jdbcTemplate.update("delete from users where user_id = ?", second.getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    public void testRolledBackLikeDoesNotChangeIndexes() {
+        Film film = filmStorage.createFilm(Film.builder()
+                .name("Rolled back")
+                .description("Description")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(new Mpa(1, null))
+                .build());
+        User user = userService.createUser(new User(0, "rollback@mail.ru", "rollback", "Rollback", LocalDate.of(1990, 1, 1)));
+
+        // Лайк внутри внешней транзакции, которая затем откатывается
+        transactionTemplate.executeWithoutResult(status -> {
+            filmStorage.addLike(film.getId(), user.getId());
+            status.setRollbackOnly();
+        });
+
+        assertThat(countLikesInTable(film.getId())).isZero();
+        assertThat(popularityIndex.getLikes(film.getId())).isZero();
+        assertThat(likesIndex.getLikedFilms(user.getId())).isEmpty();
+
+        filmStorage.addLike(film.getId(), user.getId());
+        assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(1);
+    }
+
+    private boolean tryLike(int filmId, int userId) {
+        try {
+            filmStorage.addLike(filmId, userId);
+            return true;
+        } catch (ValidateException e) {
+            return false;
+        }
+    }
+
+    private int countSuccessful(List<Callable<Boolean>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        try {
+            int successful = 0;
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                if (result.get()) {
+                    successful++;
+                }
+            }
+            return successful;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private List<Integer> createUsers() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < USERS_COUNT; i++) {
+            rows.add(new Object[]{"fan" + i + "@mail.ru", "fan" + i, "Fan " + i, Date.valueOf(LocalDate.of(1990, 1, 1))});
+        }
+        jdbcTemplate.batchUpdate("insert into users(email, login, name, birthday) values (?, ?, ?, ?)", rows);
+        return jdbcTemplate.queryForList("select user_id from users where login like 'fan%'", Integer.class);
+    }
+
+    private int countLikesInTable(int filmId) {
+        return jdbcTemplate.queryForObject("select count(*) from film_user where film_id = ?", Integer.class, filmId);
+    }
+}
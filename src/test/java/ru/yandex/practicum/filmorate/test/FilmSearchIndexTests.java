@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTests {
+    private final Map<Integer, Integer> likes = Map.of(1, 5, 2, 10, 3, 0, 4, 1);
+    private final IntUnaryOperator likesOf = filmId -> likes.getOrDefault(filmId, 0);
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new FilmSearchIndex();
+        index.index(1, "Крестный отец", "Криминальная сага о семье Корлеоне");
+        index.index(2, "Отец невесты", "Комедия о свадьбе");
+        index.index(3, "Matrix", "Hacker Neo learns the truth");
+        index.index(4, "Отцы и деды", "Семейная комедия");
+    }
+
+    @Test
+    public void testExactMatchRanksAbovePrefixThenByLikes() {
+        // "отец" целиком в названиях фильмов 1 и 2, префикс "отцы" не совпадает
+        assertThat(index.search("Отец", true, true, 10, likesOf)).containsExactly(2, 1);
+        // Префикс: "отц" совпадает только с "отцы"
+        assertThat(index.search("отц", true, false, 10, likesOf)).containsExactly(4);
+    }
+
+    @Test
+    public void testSubstringAndFieldSelection() {
+        assertThat(index.search("trix", true, false, 10, likesOf)).containsExactly(3);
+        assertThat(index.search("медия", true, false, 10, likesOf)).isEmpty();
+        // Подстрока слова "комедия" в описаниях фильмов 2 и 4, порядок по лайкам
+        assertThat(index.search("медия", false, true, 10, likesOf)).containsExactly(2, 4);
+    }
+
+    @Test
+    public void testAllQueryWordsMustMatch() {
+        assertThat(index.search("отец сага", true, true, 10, likesOf)).containsExactly(1);
+        assertThat(index.search("отец neo", true, true, 10, likesOf)).isEmpty();
+    }
+
+    @Test
+    public void testResultIsLimitedToTopCount() {
+        // Префикс "о" совпадает с названиями фильмов 1, 2 и 4 с равной релевантностью
+        assertThat(index.search("о", true, true, 10, likesOf)).containsExactly(2, 1, 4);
+        assertThat(index.search("о", true, true, 2, likesOf)).containsExactly(2, 1);
+        assertThat(index.search("о", true, true, 0, likesOf)).isEmpty();
+    }
+
+    @Test
+    public void testReindexReplacesOldWords() {
+        index.index(3, "Матрица", "Нео узнает правду");
+
+        assertThat(index.search("matrix", true, true, 10, likesOf)).isEmpty();
+        assertThat(index.search("матр", true, true, 10, likesOf)).containsExactly(3);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.test;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FlywayMigrationTests {
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        new ResourceDatabasePopulator(new ClassPathResource("db/legacy_schema.sql")).execute(dataSource);
+    }
+
+    @Test
+    public void testLegacyDatabaseGetsKeysAndRate() {
+        // База в состоянии до миграций: повторяющиеся лайки, жанры и запросы в друзья, пустой счетчик лайков
+        jdbcTemplate.update("insert into genre(genre_id, name) values (1, 'Комедия')");
+        jdbcTemplate.update("insert into users(user_id, email, login) values (1, 'first@mail.ru', 'first')");
+        jdbcTemplate.update("insert into users(user_id, email, login) values (2, 'second@mail.ru', 'second')");
+        jdbcTemplate.update("insert into film(film_id, name, release_date, duration) values (1, 'Film', '2000-01-01', 90)");
+        jdbcTemplate.update("insert into film(film_id, name, release_date, duration) values (2, 'Other', '2000-01-01', 90)");
+        jdbcTemplate.update("insert into film_user(film_id, user_id) values (1, 1), (1, 1), (1, 2)");
+        jdbcTemplate.update("insert into film_genre(film_id, genre_id) values (1, 1), (1, 1)");
+        jdbcTemplate.update("insert into user_friend(user_id, friend_id) values (1, 2), (1, 2)");
+
+        migrate();
+
+        assertThat(jdbcTemplate.queryForList("select rate from film order by film_id", Integer.class))
+                .containsExactly(2, 0);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from film_genre", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from user_friend", Integer.class)).isEqualTo(1);
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into film_user(film_id, user_id) values (1, 1)"))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into user_friend(user_id, friend_id) values (1, 2)"))
+                .isInstanceOf(DuplicateKeyException.class);
+        // Новый фильм получает нулевой счетчик, а не NULL
+        jdbcTemplate.update("insert into film(film_id, name, release_date, duration) values (3, 'New', '2000-01-01', 90)");
+        assertThat(jdbcTemplate.queryForObject("select rate from film where film_id = 3", Integer.class)).isZero();
+        // Внешние ключи таблиц связей остаются в одном экземпляре
+        assertThat(jdbcTemplate.queryForObject("select count(*) from information_schema.table_constraints "
+                + "where table_name = 'FILM_USER' and constraint_type = 'FOREIGN KEY'", Integer.class)).isEqualTo(2);
+    }
+
+    private void migrate() {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraph;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphTests {
+    private FriendGraph graph;
+
+    @BeforeEach
+    public void setUp() {
+        graph = new FriendGraph();
+        graph.rebuild(Map.of(
+                1, new int[]{2, 3, 5, 8},
+                2, new int[]{1, 3},
+                4, new int[]{3, 5, 7, 8}));
+    }
+
+    @Test
+    public void testCommonFriendsAreSortedIntersection() {
+        assertThat(graph.findCommonFriends(1, 4)).containsExactly(3, 5, 8);
+        assertThat(graph.findCommonFriends(1, 2)).containsExactly(3);
+        assertThat(graph.findCommonFriends(1, 6)).isEmpty();
+    }
+
+    @Test
+    public void testFriendsStaySortedAfterChanges() {
+        graph.addFriend(1, 4);
+        graph.addFriend(1, 9);
+        graph.removeFriend(1, 3);
+
+        assertThat(graph.getFriends(1)).containsExactly(2, 4, 5, 8, 9);
+        assertThat(graph.isFriend(1, 4)).isTrue();
+        assertThat(graph.isFriend(1, 3)).isFalse();
+    }
+
+    @Test
+    public void testRemoveUserDropsIncomingAndOutgoingEdges() {
+        graph.removeUser(3);
+        graph.removeUser(1);
+
+        assertThat(graph.getFriends(1)).isEmpty();
+        assertThat(graph.getFriends(2)).isEmpty();
+        assertThat(graph.getFriends(4)).containsExactly(5, 7, 8);
+    }
+
+    @Test
+    public void testRecommendedFriendsRankedByMutualFriends() {
+        // У пользователя 4 с пользователем 1 общие друзья 3, 5 и 8, у пользователя 6 - 3 и 5,
+        // пользователь 2 уже в друзьях и не рекомендуется
+        graph.addFriend(6, 3);
+        graph.addFriend(6, 5);
+
+        assertThat(graph.findRecommendedFriends(1, 10, 1000)).containsExactly(4, 6);
+        assertThat(graph.findRecommendedFriends(1, 1, 1000)).containsExactly(4);
+        assertThat(graph.findRecommendedFriends(7, 10, 1000)).isEmpty();
+    }
+
+    @Test
+    public void testRecommendedFriendsHeapIsLimitedByCandidates() {
+        // Куча размером с число кандидатов, а не с запрошенное количество
+        assertThat(graph.findRecommendedFriends(1, Integer.MAX_VALUE, 1000)).containsExactly(4);
+    }
+
+    @Test
+    public void testRecommendedFriendsRespectWorkLimit() {
+        graph.addFriend(6, 3);
+
+        // Четыре связи: 2 -> 1, 3 -> 1, 3 -> 2, 3 -> 4, до пользователя 6 обход не доходит
+        assertThat(graph.findRecommendedFriends(1, 10, 4)).containsExactly(4);
+        assertThat(graph.findRecommendedFriends(1, 10, 1)).isEmpty();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.ImportService;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.import.chunk-size=2")
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ImportServiceTests {
+    private final ImportService importService;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void testImportSkipsBadRowsAndKeepsTheRest() {
+        ImportReport users = importService.importUsers(ndjson(
+                "{\"email\":\"first@mail.ru\",\"login\":\"first\",\"birthday\":\"1990-01-01\"}",
+                "{\"email\":\"not an email\",\"login\":\"second\",\"birthday\":\"1990-01-01\"}",
+                "",
+                "{\"email\":\"third@mail.ru\",\"login\":\"third\",\"name\":\"Третий\",\"birthday\":\"1991-02-03\"}",
+                "{broken"));
+        assertThat(users.getRows()).isEqualTo(4);
+        assertThat(users.getImported()).isEqualTo(2);
+        assertThat(users.getFailed()).isEqualTo(2);
+        assertThat(users.getErrors()).extracting(ImportReport.RowError::getLine).containsExactly(2, 5);
+        assertThat(userStorage.findUserById(1)).hasValueSatisfying(user -> assertThat(user.getName()).isEqualTo("first"));
+        assertThat(userStorage.findUserById(2)).hasValueSatisfying(user -> assertThat(user.getName()).isEqualTo("Третий"));
+
+        ImportReport films = importService.importFilms(ndjson(
+                "{\"name\":\"Первый\",\"description\":\"Описание\",\"releaseDate\":\"2000-01-01\",\"duration\":90,"
+                        + "\"mpa\":{\"id\":1},\"genres\":[{\"id\":2},{\"id\":1},{\"id\":2}]}",
+                "{\"name\":\"Второй\",\"description\":\"Описание\",\"releaseDate\":\"2001-01-01\",\"duration\":100,"
+                        + "\"mpa\":{\"id\":99}}",
+                "{\"name\":\"Третий\",\"description\":\"Описание\",\"releaseDate\":\"2002-01-01\",\"duration\":110,"
+                        + "\"mpa\":{\"id\":2}}"));
+        assertThat(films.getImported()).isEqualTo(2);
+        assertThat(films.getFailed()).isEqualTo(1);
+        assertThat(films.getErrors()).extracting(ImportReport.RowError::getLine).containsExactly(2);
+        assertThat(filmStorage.findAllFilms()).extracting("name").containsExactlyInAnyOrder("Первый", "Третий");
+
+        int firstFilm = filmStorage.searchFilms("первый", true, false, 1).iterator().next().getId();
+        ImportReport likes = importService.importLikes(ndjson(
+                "{\"filmId\":" + firstFilm + ",\"userId\":1}",
+                "{\"filmId\":" + firstFilm + ",\"userId\":2}",
+                "{\"filmId\":" + firstFilm + ",\"userId\":1}",
+                "{\"filmId\":1000,\"userId\":1}"));
+        assertThat(likes.getImported()).isEqualTo(2);
+        assertThat(likes.getSkipped()).isEqualTo(1);
+        assertThat(likes.getFailed()).isEqualTo(1);
+        assertThat(filmStorage.getPopular(1)).singleElement().satisfies(film -> {
+            assertThat(film.getId()).isEqualTo(firstFilm);
+            assertThat(film.getRate()).isEqualTo(2);
+        });
+
+        ImportReport friends = importService.importFriends(ndjson(
+                "{\"userId\":1,\"friendId\":2}",
+                "{\"userId\":1,\"friendId\":2}",
+                "{\"userId\":2,\"friendId\":1}"));
+        assertThat(friends.getImported()).isEqualTo(2);
+        assertThat(friends.getSkipped()).isEqualTo(1);
+        assertThat(userStorage.findCommonFriends(1, 2)).isEmpty();
+        assertThat(userStorage.findUsersFriends(1)).extracting("id").containsExactly(2);
+    }
+
+    private static InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exceptions.NotSavedException;
+import ru.yandex.practicum.filmorate.exceptions.ValidateException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularityIndex;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.batch-size=1000",
+        "filmorate.likes.write-behind.flush-interval-ms=600000"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeWriteBufferTests {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    private final LikesIndex likesIndex;
+
+    @Test
+    public void testBufferedLikesAreVisibleBeforeFlush() {
+        Film film = filmService.createFilm(Film.builder()
+                .name("Buffered")
+                .description("Description")
+                .releaseDate(LocalDate.of(2021, 5, 5))
+                .duration(100)
+                .mpa(new Mpa(2, null))
+                .build());
+        User first = userService.createUser(new User(0, "buffer1@mail.ru", "buffer1", "First", LocalDate.of(1990, 1, 1)));
+        User second = userService.createUser(new User(0, "buffer2@mail.ru", "buffer2", "Second", LocalDate.of(1990, 1, 1)));
+
+        filmService.addLike(film.getId(), first.getId());
+        filmService.addLike(film.getId(), second.getId());
+        // Лайк, который отменили до записи, в базу не попадает
+        filmService.removeLike(film.getId(), second.getId());
+
+        // Лайки видны сразу, но в базу еще не записаны
+        assertThat(filmService.findFilmById(film.getId()).orElseThrow().getRate()).isEqualTo(1);
+        assertThat(countLikesInTable(film.getId())).isZero();
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), first.getId())).isInstanceOf(ValidateException.class);
+
+        likeWriteBuffer.flush();
+
+        assertThat(countLikesInTable(film.getId())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select rate from film where film_id = ?", Integer.class, film.getId())).isEqualTo(1);
+
+        // После записи повторный лайк проверяется по базе, а удаление попадает в следующий пакет
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), first.getId())).isInstanceOf(ValidateException.class);
+        filmService.removeLike(film.getId(), first.getId());
+        assertThat(filmService.findFilmById(film.getId()).orElseThrow().getRate()).isZero();
+        likeWriteBuffer.flush();
+
+        assertThat(countLikesInTable(film.getId())).isZero();
+        assertThat(jdbcTemplate.queryForObject("select rate from film where film_id = ?", Integer.class, film.getId())).isZero();
+    }
+
+    @Test
+    public void testGroupCommitFailsRequestWhoseLikeWasNotSaved() throws Exception {
+        // Отдельный буфер в режиме GROUP_COMMIT, пакет записывается только вызовом flush
+        LikeWriteBuffer groupCommit = new LikeWriteBuffer(filmStorage, popularityIndex, likesIndex,
+                true, 1000, 600000, LikeWriteBuffer.Durability.GROUP_COMMIT);
+        Film film = filmService.createFilm(Film.builder()
+                .name("Group commit")
+                .description("Description")
+                .releaseDate(LocalDate.of(2021, 5, 5))
+                .duration(100)
+                .mpa(new Mpa(2, null))
+                .build());
+        User kept = userService.createUser(new User(0, "kept@mail.ru", "kept", "Kept", LocalDate.of(1990, 1, 1)));
+        User deleted = userService.createUser(new User(0, "deleted@mail.ru", "deleted", "Deleted", LocalDate.of(1990, 1, 1)));
+
+        CompletableFuture<Void> keptLike = CompletableFuture.runAsync(() -> groupCommit.addLike(film.getId(), kept.getId()));
+        CompletableFuture<Void> lostLike = CompletableFuture.runAsync(() -> groupCommit.addLike(film.getId(), deleted.getId()));
+        while (popularityIndex.getLikes(film.getId()) < 2) {
+            Thread.sleep(10);
+        }
+        // Пользователь удален до записи пакета, его лайк нарушит внешний ключ
+        jdbcTemplate.update("delete from users where user_id = ?", deleted.getId());
+        groupCommit.flush();
+
+        keptLike.join();
+        assertThatThrownBy(lostLike::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(NotSavedException.class);
+        assertThat(countLikesInTable(film.getId())).isEqualTo(1);
+        assertThat(popularityIndex.getLikes(film.getId())).isEqualTo(1);
+    }
+
+    private int countLikesInTable(int filmId) {
+        return jdbcTemplate.queryForObject("select count(*) from film_user where film_id = ?", Integer.class, filmId);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.index.LikesIndex;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikesIndexTests {
+    private LikesIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        // Пользователю 1 понравились фильмы 1, 2, 3; пользователю 2 - 1, 2, 4; пользователю 3 - 1, 5; пользователю 4 - 6
+        index = new LikesIndex();
+        index.rebuild(Map.of(
+                1, new int[]{1, 2, 3},
+                2, new int[]{1, 2},
+                3, new int[]{1},
+                4, new int[]{2},
+                5, new int[]{3},
+                6, new int[]{4}));
+    }
+
+    @Test
+    public void testRecommendationsWeightedByCommonLikes() {
+        assertThat(index.getLikedFilms(1)).containsExactly(1, 2, 3);
+        assertThat(index.findRecommendedFilms(1, 10, 10, 1000)).containsExactly(4, 5);
+        assertThat(index.findRecommendedFilms(1, 10, 1, 1000)).containsExactly(4);
+        assertThat(index.findRecommendedFilms(4, 10, 10, 1000)).isEmpty();
+    }
+
+    @Test
+    public void testRecommendationHeapsAreLimitedByCandidates() {
+        // Кучи размером с число соседей и фильмов-кандидатов, а не с запрошенные количества
+        assertThat(index.findRecommendedFilms(1, Integer.MAX_VALUE, Integer.MAX_VALUE, 1000)).containsExactly(4, 5);
+    }
+
+    @Test
+    public void testRecommendationsFollowLikeChanges() {
+        index.addLike(5, 2);
+        index.removeLike(4, 2);
+
+        // Теперь у пользователя 2 фильмы 1, 2, 5, а фильм 4 никому не нравится
+        assertThat(index.findRecommendedFilms(1, 10, 10, 1000)).containsExactly(5);
+
+        index.removeUser(2);
+        index.removeUser(3);
+
+        assertThat(index.findRecommendedFilms(1, 10, 10, 1000)).isEmpty();
+    }
+}
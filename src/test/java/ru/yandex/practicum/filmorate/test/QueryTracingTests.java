@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.test;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.metrics.QueryTrace;
+import ru.yandex.practicum.filmorate.metrics.QueryTracker;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "filmorate.jdbc.tracing.enabled=true",
+        "filmorate.jdbc.tracing.max-statements=1",
+        "filmorate.jdbc.tracing.repeated-statements=3"})
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryTracingTests {
+    private final MockMvc mockMvc;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void testEndpointQueryBudgetAndSlowRequestLog(CapturedOutput output) throws Exception {
+        User user = userStorage.createUser(new User(0, "first@mail.ru", "first", "First", LocalDate.of(1990, 1, 1)));
+        User friend = userStorage.createUser(new User(0, "second@mail.ru", "second", "Second", LocalDate.of(1991, 1, 1)));
+        userStorage.addFriend(user.getId(), friend.getId());
+
+        QueryTrace trace = QueryTracker.start();
+        mockMvc.perform(get("/users/" + user.getId() + "/friends")).andExpect(status().isOk());
+        trace.stop();
+
+        // Проверка существования пользователя и загрузка друзей по id из графа дружбы
+        assertThat(trace.getCount()).isEqualTo(2);
+        // Журнал пишется асинхронно, сообщение появляется в выводе с задержкой
+        String expected = "Запрос GET /users/" + user.getId() + "/friends: 2 SQL-запросов";
+        for (int i = 0; i < 50 && !output.getAll().contains(expected); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(output).contains(expected);
+    }
+
+    @Test
+    public void testRepeatedStatementIsReportedWithCallSite() {
+        User user = userStorage.createUser(new User(0, "third@mail.ru", "third", "Third", LocalDate.of(1992, 1, 1)));
+
+        QueryTrace trace = QueryTracker.start();
+        for (int i = 0; i < 3; i++) {
+            userStorage.findUserById(user.getId());
+        }
+        trace.stop();
+
+        assertThat(trace.getRepeatedStatements(3)).singleElement().satisfies(statement -> {
+            assertThat(statement.getSql()).startsWith("SELECT user_id, email, login, name, birthday FROM users");
+            assertThat(statement.getCallSites()).singleElement().asString().startsWith("UserDbStorage.findUserById:");
+        });
+    }
+}
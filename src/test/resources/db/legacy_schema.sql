@@ -1,11 +1,4 @@
-DROP TABLE IF EXISTS genre CASCADE;
-DROP TABLE IF EXISTS rating CASCADE;
-DROP TABLE IF EXISTS film_genre CASCADE;
-DROP TABLE IF EXISTS film_rating CASCADE;
-DROP TABLE IF EXISTS film CASCADE;
-DROP TABLE IF EXISTS user_friend CASCADE;
-DROP TABLE IF EXISTS film_user CASCADE;
-DROP TABLE IF EXISTS users CASCADE;
+-- Схема из schema.sql до перехода на Flyway: таблицы связей без первичных ключей, film.rate допускает NULL
 
 CREATE TABLE IF NOT EXISTS genre
 (
@@ -61,4 +54,4 @@ CREATE TABLE IF NOT EXISTS film_user
 (
     film_id integer REFERENCES film (film_id) ON DELETE CASCADE,
     user_id integer REFERENCES users (user_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);